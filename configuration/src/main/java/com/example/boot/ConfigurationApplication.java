@@ -4,24 +4,23 @@ package com.example.boot;
 import a.b.c.GreetingApplicationRunner;
 import a.b.c.NameProducer;
 import org.jspecify.annotations.Nullable;
-import org.springframework.aot.hint.RuntimeHints;
-import org.springframework.aot.hint.RuntimeHintsRegistrar;
-import org.springframework.aot.hint.TypeReference;
-import org.springframework.beans.factory.aot.BeanFactoryInitializationAotContribution;
-import org.springframework.beans.factory.aot.BeanFactoryInitializationAotProcessor;
-import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.ApplicationRunner;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
+import org.springframework.jdbc.UncategorizedSQLException;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.simple.JdbcClient;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
 import org.springframework.jdbc.support.SqlArrayValue;
 import org.springframework.resilience.annotation.ConcurrencyLimit;
 import org.springframework.resilience.annotation.EnableResilientMethods;
@@ -29,14 +28,21 @@ import org.springframework.resilience.annotation.Retryable;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.Assert;
 
+import javax.sql.DataSource;
 import java.io.Serializable;
 import java.lang.reflect.Array;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 
 @Configuration
@@ -59,50 +65,28 @@ class Cart implements Serializable {
 }
 
 @SpringBootApplication
-@ImportRuntimeHints(ConfigurationApplication.Hints.class)
 public class ConfigurationApplication {
 
     public static void main(String[] args) throws Exception {
-        SpringApplication.run(ConfigurationApplication.class, args);
-    }
-
-    @Bean
-    static SerializationBeanFactoryInitializationAotProcessor serializationBeanFactoryInitializationAotProcessor() {
-        return new SerializationBeanFactoryInitializationAotProcessor();
-    }
-
-    static class SerializationBeanFactoryInitializationAotProcessor implements
-            BeanFactoryInitializationAotProcessor {
-
-        @Override
-        public @Nullable BeanFactoryInitializationAotContribution processAheadOfTime(
-                ConfigurableListableBeanFactory beanFactory) {
-
-            var serializable = new HashSet<TypeReference>();
-
-            for (var name : beanFactory.getBeanDefinitionNames()) {
-                var type = beanFactory.getType(name);
-                if (Serializable.class.isAssignableFrom(type)) {
-                    serializable.add(TypeReference.of(type));
-                }
-            }
-            IO.println(serializable);
-
-            return (generationContext, _) -> serializable.forEach(tr ->
-                    generationContext.getRuntimeHints().serialization().registerType(tr));
+        var application = new SpringApplication(ConfigurationApplication.class);
+        // read before the Environment exists, so these are system properties
+        if (Boolean.getBoolean("customer.startup.timeline")) {
+            application.setApplicationStartup(new StartupTimeline(10_000, Boolean.getBoolean("customer.startup.jfr")));
+        }
+        var context = application.run(args);
+        // the AOT cache training run and startup.sh stop here, once the runners are done, so
+        // the JVM exits cleanly and writes the cache
+        if (Boolean.getBoolean("customer.startup.exit")) {
+            System.exit(SpringApplication.exit(context));
         }
     }
 
-    static class Hints implements RuntimeHintsRegistrar {
-
-        @Override
-        public void registerHints(@Nullable RuntimeHints hints, @Nullable ClassLoader classLoader) {
-            hints.resources().registerResource(FILE);
-//            hints.reflection().registerType()
-
-        }
+    @Bean
+    static NativeHintsAotProcessor nativeHintsAotProcessor() {
+        return new NativeHintsAotProcessor();
     }
 
+    // NativeHintsAotProcessor registers the resource for a native image
     static final Resource FILE = new ClassPathResource("/message");
 
     @Bean
@@ -135,17 +119,49 @@ class CustomerRepositoryRunner implements CommandLineRunner {
 
     @Override
     public void run(String... args) throws Exception {
-        repository.findAll().forEach(IO::println);
+        // measured as the first row arrives, or once the scan finds none, so printing the
+        // table isn't counted
+        var measured = new AtomicBoolean();
+        repository.scanAll(customer -> {
+            if (!measured.getAndSet(true)) {
+                printFirstQuery();
+            }
+            IO.println(customer);
+        });
+        if (!measured.get()) {
+            printFirstQuery();
+        }
+        // startup.sh launches again and again, and every launch would find two more rows
+        if (Boolean.getBoolean("customer.startup.exit")) {
+            return;
+        }
         var saved = repository.saveAll(List.of(new Customer(null, "Alexey"), new Customer(null, "Josh")));
         saved.forEach(IO::println);
     }
 
+    // startup.sh compares launches on this line
+    private static void printFirstQuery() {
+        IO.println("first query " + ProcessMetrics.sinceLaunch().toMillis() + " ms after launch, "
+                + ProcessMetrics.residentSetSize() / 1024 + " MB resident");
+    }
+
 }
 
 interface CustomerRepository {
 
     Collection<Customer> findAll();
 
+    // visits every customer without materializing the table; the consumer runs while the
+    // cursor is open, so it mustn't hold on to the rows it is given
+    void scanAll(Consumer<Customer> consumer);
+
+    // keyset pagination on id: pass null for the first page, then the page's nextAfterId
+    CustomerPage findPage(@Nullable Integer afterId, int limit);
+
+    // streams the customers into the table with COPY on the current transaction's
+    // connection; a failure part way through rolls back with the rest of the transaction
+    BulkLoadResult bulkLoad(Stream<Customer> customers);
+
     Collection<Customer> findById(Iterable<Integer> ids);
 
     Collection<Customer> saveAll(Collection<Customer> customers);
@@ -158,10 +174,30 @@ class JdbcCustomerRepository implements CustomerRepository {
 
     private final RowMapper<Customer> rowMapper = (rs, _) -> new Customer(rs.getInt("id"), rs.getString("name"));
 
+    private static final String COPY_SQL = "copy customer (name) from stdin with (format csv)";
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
     private final JdbcClient db;
 
-    JdbcCustomerRepository(JdbcClient jdbcClient) {
+    private final DataSource dataSource;
+
+    private final SQLExceptionTranslator exceptionTranslator;
+
+    private final int batchSize;
+
+    private final int fetchSize;
+
+    JdbcCustomerRepository(JdbcClient jdbcClient, DataSource dataSource,
+                           @Value("${customer.jdbc.batch-size:500}") int batchSize,
+                           @Value("${customer.jdbc.fetch-size:1000}") int fetchSize) {
+        Assert.isTrue(batchSize > 0, "the batch size must be greater than zero");
+        Assert.isTrue(fetchSize > 0, "the fetch size must be greater than zero");
         this.db = jdbcClient;
+        this.dataSource = dataSource;
+        this.exceptionTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+        this.batchSize = batchSize;
+        this.fetchSize = fetchSize;
     }
 
     @Override
@@ -169,6 +205,37 @@ class JdbcCustomerRepository implements CustomerRepository {
         return this.db.sql("select * from customer").query(this.rowMapper).list();
     }
 
+    // postgres only opens a server-side cursor for a positive fetch size inside a
+    // transaction; otherwise the driver buffers the whole result set
+    @Transactional(readOnly = true)
+    @Override
+    public void scanAll(Consumer<Customer> consumer) {
+        try (var customers = this.db.sql("select * from customer")
+                .withFetchSize(this.fetchSize)
+                .query(this.rowMapper)
+                .stream()) {
+            customers.forEach(consumer);
+        }
+    }
+
+    // seeks straight to the first id after the cursor using the primary key index, so
+    // every page costs the same no matter how deep it is. one extra row is read to tell
+    // whether there's a next page
+    @Transactional(readOnly = true)
+    @Override
+    public CustomerPage findPage(@Nullable Integer afterId, int limit) {
+        Assert.isTrue(limit > 0, "the limit must be greater than zero");
+        var customers = this.db.sql("select * from customer where id > ? order by id limit ?")
+                .params(afterId == null ? Integer.MIN_VALUE : afterId, (long) limit + 1)
+                .query(this.rowMapper)
+                .list();
+        if (customers.size() <= limit) {
+            return new CustomerPage(customers, null);
+        }
+        var page = customers.subList(0, limit);
+        return new CustomerPage(page, page.getLast().id());
+    }
+
     @Override
     public Collection<Customer> findById(Iterable<Integer> ids) {
         return this.db.sql("select * from customer where id = any(?)")
@@ -177,19 +244,77 @@ class JdbcCustomerRepository implements CustomerRepository {
                 .list();
     }
 
+    // one multi-row insert per chunk: the names travel as a single array parameter and
+    // the generated rows come straight back from RETURNING, so there's no second select
     @Override
     public Collection<Customer> saveAll(Collection<Customer> customers) {
-        var ids = new ArrayList<Integer>();
-        var counter = 0;
+        var saved = new ArrayList<Customer>(customers.size());
+        var names = new ArrayList<String>(Math.min(customers.size(), this.batchSize));
         for (var c : customers) {
-            var keyHolder = new GeneratedKeyHolder();
-            // if (counter == 1) throw new IllegalStateException("ooops!");
-            this.db.sql("insert into customer ( name) values (?)").params(c.name()).update(keyHolder);
-            var id = (Number) keyHolder.getKeyList().getFirst().get("id");
-            ids.add(id.intValue());
-            counter++;
+            names.add(c.name());
+            if (names.size() == this.batchSize) {
+                saved.addAll(insert(names));
+                names.clear();
+            }
+        }
+        if (!names.isEmpty()) {
+            saved.addAll(insert(names));
+        }
+        return saved;
+    }
+
+    // the rows are written as csv in 64k chunks straight from the stream, so memory stays
+    // flat however many customers there are
+    @Override
+    public BulkLoadResult bulkLoad(Stream<Customer> customers) {
+        var start = System.nanoTime();
+        var connection = DataSourceUtils.getConnection(this.dataSource);
+        try {
+            var copy = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+            try {
+                var buffer = new StringBuilder(COPY_BUFFER_SIZE);
+                for (var iterator = customers.iterator(); iterator.hasNext(); ) {
+                    var name = iterator.next().name();
+                    if (name != null) {
+                        buffer.append('"').append(name.replace("\"", "\"\"")).append('"');
+                    }
+                    buffer.append('\n');
+                    if (buffer.length() >= COPY_BUFFER_SIZE) {
+                        writeToCopy(copy, buffer);
+                    }
+                }
+                writeToCopy(copy, buffer);
+                var rows = copy.endCopy();
+                return new BulkLoadResult(rows, Duration.ofNanos(System.nanoTime() - start));
+            }
+            finally {
+                if (copy.isActive()) {
+                    copy.cancelCopy();
+                }
+            }
         }
-        return findById(ids);
+        catch (SQLException e) {
+            var translated = this.exceptionTranslator.translate("bulkLoad", COPY_SQL, e);
+            throw translated != null ? translated : new UncategorizedSQLException("bulkLoad", COPY_SQL, e);
+        }
+        finally {
+            DataSourceUtils.releaseConnection(connection, this.dataSource);
+        }
+    }
+
+    private static void writeToCopy(CopyIn copy, StringBuilder buffer) throws SQLException {
+        if (!buffer.isEmpty()) {
+            var bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copy.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+    }
+
+    private List<Customer> insert(List<String> names) {
+        return this.db.sql("insert into customer (name) select * from unnest(?) returning id, name")
+                .params(new SqlArrayValue("text", names.toArray()))
+                .query(this.rowMapper)
+                .list();
     }
 
     private <T> T[] from(Iterable<T> iterable) {
@@ -200,4 +325,19 @@ class JdbcCustomerRepository implements CustomerRepository {
 }
 
 record Customer(Integer id, String name) {
+}
+
+record BulkLoadResult(long rows, Duration elapsed) {
+
+    double rowsPerSecond() {
+        var nanos = this.elapsed.toNanos();
+        return nanos == 0 ? 0 : this.rows * 1_000_000_000.0 / nanos;
+    }
+}
+
+record CustomerPage(List<Customer> customers, @Nullable Integer nextAfterId) {
+
+    boolean hasNext() {
+        return this.nextAfterId != null;
+    }
 }
\ No newline at end of file
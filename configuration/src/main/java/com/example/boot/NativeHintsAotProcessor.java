@@ -0,0 +1,140 @@
+package com.example.boot;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.aot.hint.BindingReflectionHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotContribution;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackages;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.io.Serializable;
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Contributes the native image hints the beans need at runtime, worked out from the bean
+ * definitions when the application is processed ahead of time:
+ * <ul>
+ * <li>serialization for every bean type that is {@link Serializable};</li>
+ * <li>a JDK proxy for each interface listed in {@link JdkProxies @JdkProxies} on a bean
+ * class;</li>
+ * <li>the resource behind every {@code static final} {@link ClassPathResource} constant of
+ * a bean class;</li>
+ * <li>binding reflection, the constructors and the accessors, for the type each
+ * {@link RowMapper} field of a bean class maps rows to.</li>
+ * </ul>
+ * Bean types are resolved without initializing factory beans, and only the classes in
+ * the auto-configuration packages are looked into beyond their type, once each, so the
+ * hundreds of auto-configured beans cost a type lookup apiece. Reading a resource
+ * constant initializes the class that declares it, as running the application would.
+ * <p>
+ * The proxies {@code @Transactional} and the other annotations put on beans are CGLIB
+ * classes that Spring generates at build time already, so they need nothing here.
+ */
+class NativeHintsAotProcessor implements BeanFactoryInitializationAotProcessor {
+
+    @Override
+    public @Nullable BeanFactoryInitializationAotContribution processAheadOfTime(
+            ConfigurableListableBeanFactory beanFactory) {
+
+        var packages = AutoConfigurationPackages.has(beanFactory) ? AutoConfigurationPackages.get(beanFactory)
+                : List.<String>of();
+        var serializable = new LinkedHashSet<TypeReference>();
+        var proxies = new LinkedHashSet<Class<?>>();
+        var resources = new LinkedHashSet<Resource>();
+        var bindings = new LinkedHashSet<Class<?>>();
+        var inspected = new HashSet<Class<?>>();
+
+        for (var name : beanFactory.getBeanDefinitionNames()) {
+            var type = beanFactory.getType(name, false);
+            if (type == null) {
+                continue;
+            }
+            type = ClassUtils.getUserClass(type);
+            if (Serializable.class.isAssignableFrom(type) && !type.isInterface()) {
+                serializable.add(TypeReference.of(type));
+            }
+            if (inPackages(type, packages) && inspected.add(type)) {
+                inspect(type, proxies, resources, bindings);
+            }
+        }
+
+        if (serializable.isEmpty() && proxies.isEmpty() && resources.isEmpty() && bindings.isEmpty()) {
+            return null;
+        }
+
+        return (generationContext, _) -> {
+            var hints = generationContext.getRuntimeHints();
+            serializable.forEach(hints.serialization()::registerType);
+            proxies.forEach(hints.proxies()::registerJdkProxy);
+            resources.forEach(hints.resources()::registerResource);
+            new BindingReflectionHintsRegistrar().registerReflectionHints(hints.reflection(),
+                    bindings.toArray(Class<?>[]::new));
+        };
+    }
+
+    private static void inspect(Class<?> type, Set<Class<?>> proxies, Set<Resource> resources,
+            Set<Class<?>> bindings) {
+        var jdkProxies = AnnotatedElementUtils.findMergedAnnotation(type, JdkProxies.class);
+        if (jdkProxies != null) {
+            proxies.addAll(List.of(jdkProxies.value()));
+        }
+        ReflectionUtils.doWithLocalFields(type, field -> {
+            if (isConstant(field) && Resource.class.isAssignableFrom(field.getType())) {
+                ReflectionUtils.makeAccessible(field);
+                if (field.get(null) instanceof ClassPathResource resource) {
+                    resources.add(resource);
+                }
+            }
+            else if (RowMapper.class.isAssignableFrom(field.getType())) {
+                var mapped = ResolvableType.forField(field, type).as(RowMapper.class).resolveGeneric(0);
+                if (mapped != null && mapped != Object.class) {
+                    bindings.add(mapped);
+                }
+            }
+        });
+    }
+
+    private static boolean isConstant(Field field) {
+        return Modifier.isStatic(field.getModifiers()) && Modifier.isFinal(field.getModifiers());
+    }
+
+    private static boolean inPackages(Class<?> type, List<String> packages) {
+        var name = type.getPackageName();
+        for (var candidate : packages) {
+            if (name.equals(candidate) || name.startsWith(candidate + ".")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
+
+/**
+ * Lists the interfaces a bean class hands out JDK proxies for, one proxy per interface,
+ * so that {@link NativeHintsAotProcessor} can register them for a native image.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@interface JdkProxies {
+
+    Class<?>[] value();
+}
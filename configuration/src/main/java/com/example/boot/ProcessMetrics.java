@@ -0,0 +1,42 @@
+package com.example.boot;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * How long ago the process was launched and how much memory it has resident, read the
+ * same way on the JVM and in a native image, so launches of both can be compared.
+ */
+abstract class ProcessMetrics {
+
+    private static final Path STATUS = Path.of("/proc/self/status");
+
+    private static final Instant LOADED = Instant.now();
+
+    /**
+     * The time since the process was launched, or since the class was loaded if the
+     * operating system doesn't say.
+     */
+    static Duration sinceLaunch() {
+        var launched = ProcessHandle.current().info().startInstant().orElse(LOADED);
+        return Duration.between(launched, Instant.now());
+    }
+
+    /**
+     * The resident set size in kilobytes, or -1 where there's no {@code /proc}.
+     */
+    static long residentSetSize() {
+        try (var lines = Files.lines(STATUS)) {
+            return lines.filter(line -> line.startsWith("VmRSS:"))
+                .map(line -> Long.parseLong(line.replaceAll("\\D", "")))
+                .findFirst()
+                .orElse(-1L);
+        }
+        catch (IOException ex) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.boot;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.jspecify.annotations.Nullable;
+import org.springframework.aop.Advisor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+import org.springframework.transaction.annotation.EnableTransactionManagement;
+
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every {@code @Repository} method, p50/p99/p999 and a histogram in
+ * {@code repository.invocation}, and the call to the repository inside its transaction
+ * in {@code repository.call}, so the difference is the time spent beginning and
+ * completing the transaction. Records the rows it returned or wrote in
+ * {@code repository.rows}, and counts commits and rollbacks in
+ * {@code repository.transactions}. All of it is served by Actuator under
+ * {@code /actuator/metrics}, next to Boot's own {@code hikaricp.connections.acquire}. Set
+ * {@code customer.metrics.enabled=false} to leave the repositories alone.
+ */
+@Configuration
+@ConditionalOnProperty(name = "customer.metrics.enabled", havingValue = "true", matchIfMissing = true)
+// in place of Boot's own, to put the transaction advisor between the two below
+@EnableTransactionManagement(proxyTargetClass = true, order = 0)
+class RepositoryMetricsConfiguration {
+
+    // ahead of the transaction interceptor, so the time includes the transaction
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor repositoryMetricsAdvisor(ObjectProvider<MeterRegistry> meterRegistry) {
+        var advisor = new DefaultPointcutAdvisor(AnnotationMatchingPointcut.forClassAnnotation(Repository.class),
+                new RepositoryMetricsInterceptor(meterRegistry));
+        advisor.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return advisor;
+    }
+
+    // after the transaction interceptor, around the repository itself
+    @Bean
+    @Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+    static Advisor repositoryCallMetricsAdvisor(ObjectProvider<MeterRegistry> meterRegistry) {
+        var advisor = new DefaultPointcutAdvisor(AnnotationMatchingPointcut.forClassAnnotation(Repository.class),
+                new RepositoryCallInterceptor(meterRegistry));
+        advisor.setOrder(Ordered.LOWEST_PRECEDENCE);
+        return advisor;
+    }
+
+    @Bean
+    TransactionExecutionListener transactionMetrics(MeterRegistry meterRegistry) {
+        var commits = Counter.builder("repository.transactions").tag("outcome", "commit").register(meterRegistry);
+        var rollbacks = Counter.builder("repository.transactions").tag("outcome", "rollback").register(meterRegistry);
+        return new TransactionExecutionListener() {
+
+            @Override
+            public void afterCommit(TransactionExecution transaction, @Nullable Throwable commitFailure) {
+                if (commitFailure == null) {
+                    commits.increment();
+                }
+            }
+
+            @Override
+            public void afterRollback(TransactionExecution transaction, @Nullable Throwable rollbackFailure) {
+                rollbacks.increment();
+            }
+        };
+    }
+
+    static class RepositoryMetricsInterceptor implements MethodInterceptor {
+
+        private final ObjectProvider<MeterRegistry> meterRegistry;
+
+        private final Map<Method, Meters> meters = new ConcurrentHashMap<>();
+
+        RepositoryMetricsInterceptor(ObjectProvider<MeterRegistry> meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public @Nullable Object invoke(MethodInvocation invocation) throws Throwable {
+            var meters = this.meters.get(invocation.getMethod());
+            if (meters == null) {
+                meters = this.meters.computeIfAbsent(invocation.getMethod(),
+                        method -> new Meters(this.meterRegistry.getObject(), method));
+            }
+            var start = System.nanoTime();
+            try {
+                var result = invocation.proceed();
+                if (result instanceof Collection<?> collection) {
+                    meters.rows().record(collection.size());
+                }
+                else if (result instanceof BulkLoadResult bulkLoadResult) {
+                    meters.rows().record(bulkLoadResult.rows());
+                }
+                else if (result instanceof CustomerPage page) {
+                    meters.rows().record(page.customers().size());
+                }
+                return result;
+            }
+            finally {
+                meters.invocation().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    static class RepositoryCallInterceptor implements MethodInterceptor {
+
+        private final ObjectProvider<MeterRegistry> meterRegistry;
+
+        private final Map<Method, Timer> timers = new ConcurrentHashMap<>();
+
+        RepositoryCallInterceptor(ObjectProvider<MeterRegistry> meterRegistry) {
+            this.meterRegistry = meterRegistry;
+        }
+
+        @Override
+        public @Nullable Object invoke(MethodInvocation invocation) throws Throwable {
+            var timer = this.timers.get(invocation.getMethod());
+            if (timer == null) {
+                timer = this.timers.computeIfAbsent(invocation.getMethod(), method -> Timer.builder("repository.call")
+                        .tag("repository", method.getDeclaringClass().getSimpleName())
+                        .tag("method", method.getName())
+                        .register(this.meterRegistry.getObject()));
+            }
+            var start = System.nanoTime();
+            try {
+                return invocation.proceed();
+            }
+            finally {
+                timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    record Meters(Timer invocation, DistributionSummary rows) {
+
+        Meters(MeterRegistry meterRegistry, Method method) {
+            this(Timer.builder("repository.invocation")
+                            .tag("repository", method.getDeclaringClass().getSimpleName())
+                            .tag("method", method.getName())
+                            .publishPercentiles(0.5, 0.99, 0.999)
+                            .publishPercentileHistogram()
+                            .register(meterRegistry),
+                    DistributionSummary.builder("repository.rows")
+                            .baseUnit("rows")
+                            .tag("repository", method.getDeclaringClass().getSimpleName())
+                            .tag("method", method.getName())
+                            .register(meterRegistry));
+        }
+    }
+}
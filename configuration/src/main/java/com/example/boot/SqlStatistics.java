@@ -0,0 +1,414 @@
+package com.example.boot;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jspecify.annotations.Nullable;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Array;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Statistics per SQL fingerprint, the statement with its literals replaced by {@code ?}
+ * and its whitespace and case normalised, so statements that differ only in their values
+ * share an entry. Each entry counts executions, the ones that threw among them, total
+ * and maximum execution time, and the rows read or written, in adders that never block
+ * the statement being measured.
+ * <p>
+ * Memory stays bounded: once {@code maxFingerprints} entries exist, new fingerprints are
+ * folded into a single {@value #OTHER} entry, and the cache from SQL text to fingerprint
+ * stops growing at the same size. A statement that takes longer than
+ * {@code slowThreshold} is logged with the sizes of the arrays bound to it.
+ */
+@JdkProxies({ Connection.class, Statement.class, PreparedStatement.class, CallableStatement.class, ResultSet.class })
+class SqlStatistics {
+
+    static final String OTHER = "(other)";
+
+    private static final Log logger = LogFactory.getLog(SqlStatistics.class);
+
+    private final int maxFingerprints;
+
+    private final long slowThresholdNanos;
+
+    private final Map<String, Stats> statistics = new ConcurrentHashMap<>();
+
+    private final Map<String, String> fingerprints = new ConcurrentHashMap<>();
+
+    SqlStatistics(int maxFingerprints, Duration slowThreshold) {
+        Assert.isTrue(maxFingerprints > 0, "the maximum number of fingerprints must be greater than zero");
+        this.maxFingerprints = maxFingerprints;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+    }
+
+    /**
+     * Wraps the {@link DataSource} so every statement run on its connections is measured.
+     */
+    DataSource measure(DataSource dataSource) {
+        return new MeasuredDataSource(dataSource, this);
+    }
+
+    List<Entry> top(int limit) {
+        var entries = new ArrayList<Entry>(this.statistics.size());
+        this.statistics.forEach((fingerprint, stats) -> entries.add(stats.entry(fingerprint)));
+        entries.sort(Comparator.comparingDouble(Entry::totalMillis).reversed());
+        return entries.subList(0, Math.clamp(limit, 0, entries.size()));
+    }
+
+    void reset() {
+        this.statistics.clear();
+    }
+
+    // a statement that threw counts too, as an error, with the time it took to fail
+    void executed(String sql, long nanos, List<Integer> arraySizes, boolean failed) {
+        stats(sql).executed(nanos, failed);
+        if (nanos >= this.slowThresholdNanos) {
+            logger.warn("slow statement " + (failed ? "failed after " : "took ") + TimeUnit.NANOSECONDS.toMillis(nanos)
+                    + " ms with bound arrays of " + arraySizes + ": " + sql);
+        }
+    }
+
+    void rows(String sql, long rows) {
+        stats(sql).rows.add(rows);
+    }
+
+    private Stats stats(String sql) {
+        var fingerprint = fingerprintOf(sql);
+        var stats = this.statistics.get(fingerprint);
+        if (stats != null) {
+            return stats;
+        }
+        if (this.statistics.size() >= this.maxFingerprints) {
+            fingerprint = OTHER;
+        }
+        return this.statistics.computeIfAbsent(fingerprint, _ -> new Stats());
+    }
+
+    private String fingerprintOf(String sql) {
+        var fingerprint = this.fingerprints.get(sql);
+        if (fingerprint == null) {
+            fingerprint = fingerprint(sql);
+            if (this.fingerprints.size() < this.maxFingerprints) {
+                this.fingerprints.put(sql, fingerprint);
+            }
+        }
+        return fingerprint;
+    }
+
+    // literals become ?, runs of whitespace a single space, and ?, ?, ? lists a single ?
+    static String fingerprint(String sql) {
+        var out = new StringBuilder(sql.length());
+        var length = sql.length();
+        for (var i = 0; i < length; i++) {
+            var c = sql.charAt(i);
+            if (c == '\'') {
+                // skip to the closing quote, stepping over doubled quotes
+                i++;
+                while (i < length && (sql.charAt(i) != '\'' || (i + 1 < length && sql.charAt(i + 1) == '\''))) {
+                    i += (sql.charAt(i) == '\'') ? 2 : 1;
+                }
+                appendPlaceholder(out);
+            }
+            else if (Character.isDigit(c) && !partOfIdentifier(out)) {
+                while (i + 1 < length && (Character.isDigit(sql.charAt(i + 1)) || sql.charAt(i + 1) == '.')) {
+                    i++;
+                }
+                appendPlaceholder(out);
+            }
+            else if (c == '?') {
+                appendPlaceholder(out);
+            }
+            else if (Character.isWhitespace(c)) {
+                if (!out.isEmpty() && out.charAt(out.length() - 1) != ' ') {
+                    out.append(' ');
+                }
+            }
+            else {
+                out.append(Character.toLowerCase(c));
+            }
+        }
+        return out.toString().strip();
+    }
+
+    private static boolean partOfIdentifier(StringBuilder out) {
+        if (out.isEmpty()) {
+            return false;
+        }
+        var last = out.charAt(out.length() - 1);
+        return Character.isLetterOrDigit(last) || last == '_';
+    }
+
+    // a placeholder that follows "?, " or "?," is part of a list that's already a ?
+    private static void appendPlaceholder(StringBuilder out) {
+        var i = out.length() - 1;
+        while (i >= 0 && out.charAt(i) == ' ') {
+            i--;
+        }
+        if (i >= 0 && out.charAt(i) == ',') {
+            var j = i - 1;
+            while (j >= 0 && out.charAt(j) == ' ') {
+                j--;
+            }
+            if (j >= 0 && out.charAt(j) == '?') {
+                out.setLength(j + 1);
+                return;
+            }
+        }
+        out.append('?');
+    }
+
+    record Entry(String fingerprint, long count, long errors, double totalMillis, double maxMillis, long rows) {
+    }
+
+    private static final class Stats {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder errors = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+        private final LongAdder rows = new LongAdder();
+
+        void executed(long nanos, boolean failed) {
+            this.count.increment();
+            if (failed) {
+                this.errors.increment();
+            }
+            this.totalNanos.add(nanos);
+            this.maxNanos.accumulate(nanos);
+        }
+
+        Entry entry(String fingerprint) {
+            return new Entry(fingerprint, this.count.sum(), this.errors.sum(), this.totalNanos.sum() / 1_000_000.0,
+                    this.maxNanos.get() / 1_000_000.0, this.rows.sum());
+        }
+    }
+
+    static final class MeasuredDataSource extends DelegatingDataSource implements AutoCloseable {
+
+        private final SqlStatistics statistics;
+
+        MeasuredDataSource(DataSource dataSource, SqlStatistics statistics) {
+            super(dataSource);
+            this.statistics = statistics;
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            return measured(obtainTargetDataSource().getConnection());
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            return measured(obtainTargetDataSource().getConnection(username, password));
+        }
+
+        @Override
+        public void close() throws Exception {
+            if (obtainTargetDataSource() instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+
+        private Connection measured(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, new ConnectionHandler(connection, this.statistics));
+        }
+    }
+
+    // remembers the size of every array created on the connection, for the slow log
+    private static final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection connection;
+
+        private final SqlStatistics statistics;
+
+        private final Map<Array, Integer> arraySizes = new IdentityHashMap<>();
+
+        ConnectionHandler(Connection connection, SqlStatistics statistics) {
+            this.connection = connection;
+            this.statistics = statistics;
+        }
+
+        @Override
+        public @Nullable Object invoke(Object proxy, Method method, @Nullable Object[] args) throws Throwable {
+            var result = invokeOn(this.connection, method, args);
+            return switch (method.getName()) {
+                case "prepareStatement", "prepareCall" -> statement((Statement) result, (Connection) proxy,
+                        (String) args[0]);
+                case "createStatement" -> statement((Statement) result, (Connection) proxy, null);
+                case "createArrayOf" -> {
+                    this.arraySizes.put((Array) result, ((Object[]) args[1]).length);
+                    yield result;
+                }
+                case "close" -> {
+                    this.arraySizes.clear();
+                    yield result;
+                }
+                default -> result;
+            };
+        }
+
+        private Statement statement(Statement statement, Connection proxy, @Nullable String sql) {
+            Class<?> type = switch (statement) {
+                case CallableStatement _ -> CallableStatement.class;
+                case PreparedStatement _ -> PreparedStatement.class;
+                default -> Statement.class;
+            };
+            return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[] { type },
+                    new StatementHandler(statement, proxy, sql, this));
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+
+        private final Statement statement;
+
+        private final Connection connection;
+
+        private final @Nullable String sql;
+
+        private final ConnectionHandler owner;
+
+        private final List<Integer> arraySizes = new ArrayList<>();
+
+        StatementHandler(Statement statement, Connection connection, @Nullable String sql, ConnectionHandler owner) {
+            this.statement = statement;
+            this.connection = connection;
+            this.sql = sql;
+            this.owner = owner;
+        }
+
+        @Override
+        public @Nullable Object invoke(Object proxy, Method method, @Nullable Object[] args) throws Throwable {
+            var name = method.getName();
+            if (name.equals("getConnection")) {
+                return this.connection;
+            }
+            if (name.equals("setArray") && args != null && args[1] instanceof Array array) {
+                var size = this.owner.arraySizes.remove(array);
+                this.arraySizes.add(size != null ? size : -1);
+            }
+            else if (name.equals("clearParameters")) {
+                this.arraySizes.clear();
+            }
+            if (!name.startsWith("execute")) {
+                var result = invokeOn(this.statement, method, args);
+                return name.equals("getResultSet") && result instanceof ResultSet resultSet
+                        ? counted(resultSet, sqlOf(args)) : result;
+            }
+            var sql = sqlOf(args);
+            var statistics = this.owner.statistics;
+            var start = System.nanoTime();
+            var failed = true;
+            @Nullable Object result;
+            try {
+                result = invokeOn(this.statement, method, args);
+                failed = false;
+            }
+            finally {
+                statistics.executed(sql, System.nanoTime() - start, List.copyOf(this.arraySizes), failed);
+                this.arraySizes.clear();
+            }
+            return switch (result) {
+                case ResultSet resultSet -> counted(resultSet, sql);
+                case Integer count when count >= 0 -> {
+                    statistics.rows(sql, count);
+                    yield result;
+                }
+                case Long count when count >= 0 -> {
+                    statistics.rows(sql, count);
+                    yield result;
+                }
+                case int[] counts -> {
+                    var rows = 0L;
+                    for (var count : counts) {
+                        rows += Math.max(count, 0);
+                    }
+                    statistics.rows(sql, rows);
+                    yield result;
+                }
+                case null, default -> result;
+            };
+        }
+
+        private String sqlOf(@Nullable Object[] args) {
+            if (this.sql != null) {
+                return this.sql;
+            }
+            return (args != null && args.length > 0 && args[0] instanceof String sql) ? sql : "(unknown)";
+        }
+
+        private ResultSet counted(ResultSet resultSet, String sql) {
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                    new Class<?>[] { ResultSet.class }, new ResultSetHandler(resultSet, sql, this.owner.statistics));
+        }
+    }
+
+    // counts the rows read, and records them when the result set is closed
+    private static final class ResultSetHandler implements InvocationHandler {
+
+        private final ResultSet resultSet;
+
+        private final String sql;
+
+        private final SqlStatistics statistics;
+
+        private long rows;
+
+        private boolean recorded;
+
+        ResultSetHandler(ResultSet resultSet, String sql, SqlStatistics statistics) {
+            this.resultSet = resultSet;
+            this.sql = sql;
+            this.statistics = statistics;
+        }
+
+        @Override
+        public @Nullable Object invoke(Object proxy, Method method, @Nullable Object[] args) throws Throwable {
+            var result = invokeOn(this.resultSet, method, args);
+            if (method.getName().equals("next") && Boolean.TRUE.equals(result)) {
+                this.rows++;
+            }
+            else if (method.getName().equals("close") && !this.recorded) {
+                this.recorded = true;
+                this.statistics.rows(this.sql, this.rows);
+            }
+            return result;
+        }
+    }
+
+    private static @Nullable Object invokeOn(Object target, Method method, @Nullable Object[] args)
+            throws Throwable {
+        try {
+            return method.invoke(target, args);
+        }
+        catch (InvocationTargetException ex) {
+            throw ex.getTargetException();
+        }
+    }
+}
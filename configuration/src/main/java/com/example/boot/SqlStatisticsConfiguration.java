@@ -0,0 +1,72 @@
+package com.example.boot;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.actuate.endpoint.annotation.DeleteOperation;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.format.datetime.standard.DurationFormatterUtils;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Measures every statement run through the application's {@link DataSource} beans, logs
+ * the slow ones, and serves the fingerprints that cost the most in total at
+ * {@code /actuator/sql?limit=10}. A {@code DELETE} on the endpoint starts the statistics
+ * over.
+ */
+@Configuration
+@ConditionalOnProperty(name = "customer.sql.statistics.enabled", havingValue = "true", matchIfMissing = true)
+class SqlStatisticsConfiguration {
+
+    @Bean
+    static SqlStatistics sqlStatistics(Environment environment) {
+        var maxFingerprints = environment.getProperty("customer.sql.statistics.max-fingerprints", Integer.class, 500);
+        var slowThreshold = environment.getProperty("customer.sql.statistics.slow-threshold", "200ms");
+        return new SqlStatistics(maxFingerprints, DurationFormatterUtils.detectAndParse(slowThreshold));
+    }
+
+    @Bean
+    static BeanPostProcessor sqlStatisticsBeanPostProcessor(ObjectProvider<SqlStatistics> sqlStatistics) {
+        return new BeanPostProcessor() {
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+                return (bean instanceof DataSource dataSource && !(bean instanceof SqlStatistics.MeasuredDataSource))
+                        ? sqlStatistics.getObject().measure(dataSource) : bean;
+            }
+        };
+    }
+
+    @Bean
+    SqlStatisticsEndpoint sqlStatisticsEndpoint(SqlStatistics sqlStatistics) {
+        return new SqlStatisticsEndpoint(sqlStatistics);
+    }
+
+    @Endpoint(id = "sql")
+    static class SqlStatisticsEndpoint {
+
+        private final SqlStatistics sqlStatistics;
+
+        SqlStatisticsEndpoint(SqlStatistics sqlStatistics) {
+            this.sqlStatistics = sqlStatistics;
+        }
+
+        @ReadOperation
+        public List<SqlStatistics.Entry> top(@Nullable Integer limit) {
+            return this.sqlStatistics.top(limit != null ? limit : 10);
+        }
+
+        @DeleteOperation
+        public void reset() {
+            this.sqlStatistics.reset();
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.boot;
+
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingFile;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jspecify.annotations.Nullable;
+import org.springframework.boot.autoconfigure.AutoConfigurationImportFilter;
+import org.springframework.boot.autoconfigure.condition.ConditionEvaluationReport;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.context.annotation.Condition;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.core.metrics.jfr.FlightRecorderApplicationStartup;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Boot's {@link BufferingApplicationStartup}, which {@code /actuator/startup} serves as
+ * it is, with two reports on top of it:
+ * <ul>
+ * <li>{@link #report(int)}, the steps that took longest on their own, their duration less
+ * the steps nested in them, so a bean isn't blamed for the dependencies it had
+ * created;</li>
+ * <li>{@link #conditions(ConditionEvaluationReport)}, the time each condition class
+ * took, as Spring reports no step per condition.</li>
+ * </ul>
+ * The condition times are sampled: a JFR recording takes the stack of the running
+ * threads every millisecond until the application is ready, and a sample counts a
+ * millisecond for the innermost {@link Condition} or {@link AutoConfigurationImportFilter}
+ * on its stack. They're estimates, which come out low when the sampler has to wait for a
+ * CPU, on a single core machine for instance, and miss the samples whose stack JFR cut
+ * off, at 64 frames unless {@code -XX:FlightRecorderOptions:stackdepth} says otherwise.
+ * Starting JFR adds to the startup it measures, a few hundred milliseconds before the
+ * first step. With {@code flightRecorder} every step is also sent to JFR as a
+ * {@code spring.startup} event.
+ */
+class StartupTimeline extends BufferingApplicationStartup {
+
+    private static final Log logger = LogFactory.getLog(StartupTimeline.class);
+
+    private static final Duration SAMPLING_PERIOD = Duration.ofMillis(1);
+
+    private final @Nullable ApplicationStartup flightRecorder;
+
+    private final Recording sampling = new Recording();
+
+    // where the samples were written once the sampling stopped
+    private @Nullable Path recorded;
+
+    // the samples per condition class, once they've been counted
+    private @Nullable Map<String, Integer> samples;
+
+    StartupTimeline(int capacity, boolean flightRecorder) {
+        super(capacity);
+        this.flightRecorder = flightRecorder ? new FlightRecorderApplicationStartup() : null;
+        this.sampling.setName("startup-conditions");
+        this.sampling.enable("jdk.ExecutionSample").withPeriod(SAMPLING_PERIOD).withStackTrace();
+        this.sampling.start();
+    }
+
+    @Override
+    public StartupStep start(String name) {
+        // everything from here on is the application running, not starting
+        if ("spring.boot.application.ready".equals(name) || "spring.boot.application.failed".equals(name)) {
+            stopSampling();
+        }
+        var step = super.start(name);
+        return (this.flightRecorder != null) ? new FlightRecordedStep(step, this.flightRecorder.start(name)) : step;
+    }
+
+    /**
+     * The {@code limit} steps that took longest, not counting the steps nested in them.
+     */
+    List<Entry> report(int limit) {
+        var events = getBufferedTimeline().getEvents();
+        var nestedNanos = new HashMap<Long, Long>();
+        for (var event : events) {
+            var parentId = event.getStartupStep().getParentId();
+            if (parentId != null) {
+                nestedNanos.merge(parentId, event.getDuration().toNanos(), Long::sum);
+            }
+        }
+        var entries = new ArrayList<Entry>(events.size());
+        for (var event : events) {
+            var step = event.getStartupStep();
+            var tags = new LinkedHashMap<String, String>();
+            step.getTags().forEach(tag -> tags.put(tag.getKey(), tag.getValue()));
+            var durationNanos = event.getDuration().toNanos();
+            entries.add(new Entry(step.getId(), step.getParentId(), step.getName(), tags, durationNanos / 1e6,
+                    (durationNanos - nestedNanos.getOrDefault(step.getId(), 0L)) / 1e6));
+        }
+        entries.sort(Comparator.comparingDouble(Entry::selfMillis).reversed());
+        return entries.subList(0, Math.clamp(limit, 0, entries.size()));
+    }
+
+    /**
+     * The time each condition class took while the application started, slowest first,
+     * with how often Boot's {@code report} says it was evaluated and didn't match.
+     */
+    List<ConditionEntry> conditions(@Nullable ConditionEvaluationReport report) {
+        var evaluations = new HashMap<String, Integer>();
+        var notMatched = new HashMap<String, Integer>();
+        if (report != null) {
+            for (var outcomes : report.getConditionAndOutcomesBySource().values()) {
+                for (var outcome : outcomes) {
+                    var condition = ClassUtils.getUserClass(outcome.getCondition()).getName();
+                    evaluations.merge(condition, 1, Integer::sum);
+                    notMatched.merge(condition, outcome.getOutcome().isMatch() ? 0 : 1, Integer::sum);
+                }
+            }
+        }
+        var samples = samples();
+        var conditions = new LinkedHashSet<>(samples.keySet());
+        conditions.addAll(evaluations.keySet());
+        var entries = new ArrayList<ConditionEntry>(conditions.size());
+        for (var condition : conditions) {
+            entries.add(new ConditionEntry(condition, evaluations.getOrDefault(condition, 0),
+                    notMatched.getOrDefault(condition, 0),
+                    samples.getOrDefault(condition, 0) * (double) SAMPLING_PERIOD.toMillis()));
+        }
+        entries.sort(Comparator.comparingDouble(ConditionEntry::sampledMillis).reversed());
+        return entries;
+    }
+
+    /**
+     * Stops sampling the conditions, if it hasn't stopped already, and writes the samples
+     * to a file for {@link #conditions(ConditionEvaluationReport)} to count.
+     */
+    synchronized void stopSampling() {
+        if (this.sampling.getState() != RecordingState.RUNNING) {
+            return;
+        }
+        try {
+            this.sampling.stop();
+            var file = Files.createTempFile("startup-conditions", ".jfr");
+            file.toFile().deleteOnExit();
+            this.sampling.dump(file);
+            this.recorded = file;
+        }
+        catch (IOException ex) {
+            logger.warn("writing the condition samples failed, the conditions have no times", ex);
+        }
+        finally {
+            this.sampling.close();
+        }
+    }
+
+    // counted once, as reading the recording takes a while
+    private synchronized Map<String, Integer> samples() {
+        if (this.samples != null) {
+            return this.samples;
+        }
+        stopSampling();
+        var samples = new HashMap<String, Integer>();
+        if (this.recorded != null) {
+            try {
+                var conditions = new HashMap<String, Boolean>();
+                for (var event : RecordingFile.readAllEvents(this.recorded)) {
+                    var stackTrace = event.getStackTrace();
+                    if (stackTrace == null) {
+                        continue;
+                    }
+                    // the frames run from the innermost out
+                    for (var frame : stackTrace.getFrames()) {
+                        if (isCondition(frame, conditions)) {
+                            samples.merge(frame.getMethod().getType().getName(), 1, Integer::sum);
+                            break;
+                        }
+                    }
+                }
+                Files.deleteIfExists(this.recorded);
+            }
+            catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        this.samples = samples;
+        return samples;
+    }
+
+    private boolean isCondition(RecordedFrame frame, Map<String, Boolean> conditions) {
+        if (!frame.isJavaFrame()) {
+            return false;
+        }
+        return conditions.computeIfAbsent(frame.getMethod().getType().getName(), name -> {
+            try {
+                var type = ClassUtils.forName(name, getClass().getClassLoader());
+                return Condition.class.isAssignableFrom(type)
+                        || AutoConfigurationImportFilter.class.isAssignableFrom(type);
+            }
+            catch (ClassNotFoundException | LinkageError ex) {
+                // hidden classes, lambdas for instance, can't be looked up by name
+                return false;
+            }
+        });
+    }
+
+    record Entry(long id, @Nullable Long parentId, String name, Map<String, String> tags, double totalMillis,
+            double selfMillis) {
+    }
+
+    record ConditionEntry(String condition, int evaluations, int notMatched, double sampledMillis) {
+    }
+
+    // the buffered step, which Boot keeps, and the same step in JFR
+    private record FlightRecordedStep(StartupStep step, StartupStep flightRecorderStep) implements StartupStep {
+
+        @Override
+        public String getName() {
+            return this.step.getName();
+        }
+
+        @Override
+        public long getId() {
+            return this.step.getId();
+        }
+
+        @Override
+        public @Nullable Long getParentId() {
+            return this.step.getParentId();
+        }
+
+        @Override
+        public StartupStep tag(String key, String value) {
+            this.step.tag(key, value);
+            this.flightRecorderStep.tag(key, value);
+            return this;
+        }
+
+        @Override
+        public StartupStep tag(String key, Supplier<String> value) {
+            return tag(key, value.get());
+        }
+
+        @Override
+        public Tags getTags() {
+            return this.step.getTags();
+        }
+
+        @Override
+        public void end() {
+            this.flightRecorderStep.end();
+            this.step.end();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.boot;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionEvaluationReport;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.metrics.ApplicationStartup;
+
+import java.util.List;
+
+/**
+ * Serves the reports of the {@link StartupTimeline} at
+ * {@code /actuator/startuptimeline?limit=20}: the startup steps that took longest, not
+ * counting the steps nested in them, and the time each condition class took, with how
+ * often Boot evaluated it and it didn't match. The steps themselves are at
+ * {@code /actuator/startup}. Start the application with
+ * {@code -Dcustomer.startup.timeline=true} to record the timeline, and add
+ * {@code -Dcustomer.startup.jfr=true} to send the steps to JFR as well.
+ */
+@Configuration
+class StartupTimelineConfiguration {
+
+    @Bean
+    StartupTimelineEndpoint startupTimelineEndpoint(ApplicationStartup applicationStartup,
+            ConfigurableListableBeanFactory beanFactory) {
+        return new StartupTimelineEndpoint(applicationStartup, beanFactory);
+    }
+
+    @Endpoint(id = "startuptimeline")
+    static class StartupTimelineEndpoint {
+
+        private final ApplicationStartup applicationStartup;
+
+        private final ConfigurableListableBeanFactory beanFactory;
+
+        StartupTimelineEndpoint(ApplicationStartup applicationStartup, ConfigurableListableBeanFactory beanFactory) {
+            this.applicationStartup = applicationStartup;
+            this.beanFactory = beanFactory;
+        }
+
+        @ReadOperation
+        public Report report(@Nullable Integer limit) {
+            if (!(this.applicationStartup instanceof StartupTimeline timeline)) {
+                return new Report(false, List.of(), List.of());
+            }
+            return new Report(true, timeline.report(limit != null ? limit : 20),
+                    timeline.conditions(ConditionEvaluationReport.find(this.beanFactory)));
+        }
+    }
+
+    record Report(boolean recorded, List<StartupTimeline.Entry> steps,
+            List<StartupTimeline.ConditionEntry> conditions) {
+    }
+}
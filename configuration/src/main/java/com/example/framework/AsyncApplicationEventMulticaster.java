@@ -0,0 +1,315 @@
+package com.example.framework;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.PayloadApplicationEvent;
+import org.springframework.context.event.SmartApplicationListener;
+import org.springframework.core.ResolvableType;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands events published as plain objects, such as {@link UserAuthenticatedEvent}, to
+ * their listeners on virtual threads, so a slow listener doesn't hold up the publisher.
+ * Spring's own {@link ApplicationEvent}s, and listeners that don't
+ * {@linkplain ApplicationListener#supportsAsyncExecution() support async execution},
+ * are still called on the publisher's thread. {@code @EventListener} methods work as
+ * they are.
+ * <p>
+ * Every listener gets {@code partitions} bounded queues, each drained in order by its own
+ * virtual thread. An event that is a {@link Keyed} goes to the partition for its key, so
+ * a listener sees the events for one key in the order they were published; other events
+ * are spread round-robin. When a queue is full the {@link Overflow} policy decides what
+ * happens. Queue depth, dispatch lag and dropped events are recorded per listener as
+ * {@code customer.events.queue.depth}, {@code customer.events.dispatch.lag} and
+ * {@code customer.events.dropped}, and every dropped event is logged as well. Once the
+ * multicaster is closed, events are delivered on the publisher's thread, as are the
+ * events published in {@link #inline(Runnable)}.
+ * <p>
+ * The listeners are found through the same index as
+ * {@link IndexedApplicationEventMulticaster}.
+ */
+class AsyncApplicationEventMulticaster extends IndexedApplicationEventMulticaster implements AutoCloseable {
+
+	/**
+	 * What to do with an event when the listener's queue is full.
+	 */
+	enum Overflow {
+
+		/**
+		 * Wait for room, holding up the publisher.
+		 */
+		BLOCK,
+
+		/**
+		 * Drop the event that has waited longest to make room.
+		 */
+		DROP_OLDEST,
+
+		/**
+		 * Call the listener on the publisher's thread, out of order with the queue.
+		 */
+		CALLER_RUNS
+
+	}
+
+	private static final Log logger = LogFactory.getLog(AsyncApplicationEventMulticaster.class);
+
+	private final int partitions;
+
+	private final int queueCapacity;
+
+	private final Overflow overflow;
+
+	private final @Nullable MeterRegistry meterRegistry;
+
+	private final Map<ApplicationListener<?>, Lane> lanes = new ConcurrentHashMap<>();
+
+	// held to make a lane and to stop making them, so close() sees every lane there is
+	private final ReentrantLock lanesLock = new ReentrantLock();
+
+	// set while the current thread publishes in inline()
+	private final ThreadLocal<@Nullable Boolean> inline = new ThreadLocal<>();
+
+	private volatile boolean running = true;
+
+	AsyncApplicationEventMulticaster(BeanFactory beanFactory, int partitions, int queueCapacity, Overflow overflow,
+			@Nullable MeterRegistry meterRegistry) {
+		super(beanFactory);
+		Assert.isTrue(partitions > 0, "the number of partitions must be greater than zero");
+		Assert.isTrue(queueCapacity > 0, "the queue capacity must be greater than zero");
+		this.partitions = partitions;
+		this.queueCapacity = queueCapacity;
+		this.overflow = overflow;
+		this.meterRegistry = meterRegistry;
+	}
+
+	@Override
+	public void multicastEvent(ApplicationEvent event, @Nullable ResolvableType eventType) {
+		if (!(event instanceof PayloadApplicationEvent<?> payloadEvent) || !this.running
+				|| this.inline.get() != null) {
+			super.multicastEvent(event, eventType);
+			return;
+		}
+		var key = (payloadEvent.getPayload() instanceof Keyed keyed) ? keyed.orderingKey() : null;
+		for (var listener : listeners(event, eventType)) {
+			var lane = listener.supportsAsyncExecution() ? lane(listener) : null;
+			if (lane != null) {
+				lane.enqueue(event, key);
+			}
+			else {
+				invokeListener(listener, event);
+			}
+		}
+	}
+
+	// no new lanes once closing has begun, as nothing would close them
+	private @Nullable Lane lane(ApplicationListener<?> listener) {
+		var lane = this.lanes.get(listener);
+		if (lane != null) {
+			return lane;
+		}
+		this.lanesLock.lock();
+		try {
+			return this.running ? this.lanes.computeIfAbsent(listener, Lane::new) : null;
+		}
+		finally {
+			this.lanesLock.unlock();
+		}
+	}
+
+	/**
+	 * Runs {@code publishing} with every event it publishes delivered to all the
+	 * listeners before the publish returns, on this thread, so a listener's failure
+	 * reaches the publisher. For a publisher, such as the {@link OutboxDrainer}, that must
+	 * know the events were handled.
+	 */
+	void inline(Runnable publishing) {
+		var previous = this.inline.get();
+		this.inline.set(Boolean.TRUE);
+		try {
+			publishing.run();
+		}
+		finally {
+			this.inline.set(previous);
+		}
+	}
+
+	// stops taking events and waits for the ones already queued to be delivered
+	@Override
+	public void close() throws InterruptedException {
+		List<Lane> lanes;
+		this.lanesLock.lock();
+		try {
+			this.running = false;
+			lanes = List.copyOf(this.lanes.values());
+		}
+		finally {
+			this.lanesLock.unlock();
+		}
+		for (var lane : lanes) {
+			lane.close();
+		}
+	}
+
+	private static String idOf(ApplicationListener<?> listener) {
+		var id = (listener instanceof SmartApplicationListener smart) ? smart.getListenerId() : "";
+		return id.isEmpty() ? listener.getClass().getName() : id;
+	}
+
+	private final class Lane {
+
+		private final ApplicationListener<?> listener;
+
+		private final List<BlockingQueue<Dispatch>> queues = new ArrayList<>();
+
+		private final List<Thread> workers = new ArrayList<>();
+
+		private final AtomicInteger next = new AtomicInteger();
+
+		private final @Nullable Timer lag;
+
+		private final @Nullable Counter dropped;
+
+		private final AtomicLong droppedCount = new AtomicLong();
+
+		private volatile boolean open = true;
+
+		Lane(ApplicationListener<?> listener) {
+			this.listener = listener;
+			var id = idOf(listener);
+			for (var i = 0; i < AsyncApplicationEventMulticaster.this.partitions; i++) {
+				var queue = new ArrayBlockingQueue<Dispatch>(AsyncApplicationEventMulticaster.this.queueCapacity);
+				this.queues.add(queue);
+				this.workers.add(Thread.ofVirtual().name("event-" + id + "-" + i).start(() -> drain(queue)));
+			}
+			var meterRegistry = AsyncApplicationEventMulticaster.this.meterRegistry;
+			if (meterRegistry != null) {
+				Gauge.builder("customer.events.queue.depth", this, Lane::depth)
+					.tag("listener", id)
+					.register(meterRegistry);
+				this.lag = Timer.builder("customer.events.dispatch.lag").tag("listener", id).register(meterRegistry);
+				this.dropped = Counter.builder("customer.events.dropped").tag("listener", id).register(meterRegistry);
+			}
+			else {
+				this.lag = null;
+				this.dropped = null;
+			}
+		}
+
+		void enqueue(ApplicationEvent event, @Nullable Object key) {
+			var partition = (key != null) ? Math.floorMod(key.hashCode(), this.queues.size())
+					: Math.floorMod(this.next.getAndIncrement(), this.queues.size());
+			var queue = this.queues.get(partition);
+			var dispatch = new Dispatch(event, System.nanoTime());
+			if (!queue.offer(dispatch) && !overflow(queue, dispatch)) {
+				return;
+			}
+			// close() may have begun after the multicaster last checked, and the worker may
+			// have gone; whoever takes the event back delivers it
+			if (!this.open && queue.remove(dispatch)) {
+				invokeListener(this.listener, event);
+			}
+		}
+
+		// whether the event went into the queue
+		private boolean overflow(BlockingQueue<Dispatch> queue, Dispatch dispatch) {
+			var event = dispatch.event();
+			return switch (AsyncApplicationEventMulticaster.this.overflow) {
+				case BLOCK -> {
+					try {
+						queue.put(dispatch);
+					}
+					catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new IllegalStateException("interrupted waiting to queue " + event, e);
+					}
+					yield true;
+				}
+				case DROP_OLDEST -> {
+					while (!queue.offer(dispatch)) {
+						var oldest = queue.poll();
+						if (oldest != null) {
+							dropped(oldest);
+						}
+					}
+					yield true;
+				}
+				case CALLER_RUNS -> {
+					invokeListener(this.listener, event);
+					yield false;
+				}
+			};
+		}
+
+		private void dropped(Dispatch dispatch) {
+			if (this.dropped != null) {
+				this.dropped.increment();
+			}
+			logger.warn("dropped " + dispatch.event() + " for listener " + idOf(this.listener)
+					+ ", its queue is full (" + this.droppedCount.incrementAndGet() + " dropped so far)");
+		}
+
+		void close() throws InterruptedException {
+			this.open = false;
+			for (var worker : this.workers) {
+				worker.join();
+			}
+		}
+
+		private int depth() {
+			var depth = 0;
+			for (var queue : this.queues) {
+				depth += queue.size();
+			}
+			return depth;
+		}
+
+		private void drain(BlockingQueue<Dispatch> queue) {
+			while (this.open || !queue.isEmpty()) {
+				Dispatch dispatch;
+				try {
+					dispatch = queue.poll(100, TimeUnit.MILLISECONDS);
+				}
+				catch (InterruptedException _) {
+					return;
+				}
+				if (dispatch == null) {
+					continue;
+				}
+				if (this.lag != null) {
+					this.lag.record(System.nanoTime() - dispatch.enqueued(), TimeUnit.NANOSECONDS);
+				}
+				try {
+					invokeListener(this.listener, dispatch.event());
+				}
+				catch (RuntimeException | Error ex) {
+					logger.error("listener " + idOf(this.listener) + " failed on " + dispatch.event(), ex);
+				}
+			}
+		}
+
+	}
+
+	private record Dispatch(ApplicationEvent event, long enqueued) {
+	}
+
+}
@@ -0,0 +1,134 @@
+package com.example.framework;
+
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Non-blocking companion to a {@link CustomerRepository}. Every call runs on its own
+ * virtual thread, so callers can fan out lookups without tying up platform threads.
+ * <p>
+ * {@link #findByIdAsync(Iterable)} splits a large id set into chunks that are looked up
+ * in parallel, each on its own virtual thread and so its own connection, and merges the
+ * results back into the order the ids were given. The chunks of one call live in a
+ * scope that's closed before the call completes: if one chunk fails the others are
+ * cancelled, and the failure completes the future. At most {@code parallelism} chunks
+ * run at once across all callers, so a big lookup can't drain the connection pool.
+ */
+class AsyncCustomerRepository implements AutoCloseable {
+
+	private final CustomerRepository repository;
+
+	private final int chunkSize;
+
+	private final Semaphore permits;
+
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+	AsyncCustomerRepository(CustomerRepository repository, int chunkSize, int parallelism) {
+		Assert.isTrue(chunkSize > 0, "the chunk size must be greater than zero");
+		Assert.isTrue(parallelism > 0, "the parallelism must be greater than zero");
+		this.repository = repository;
+		this.chunkSize = chunkSize;
+		this.permits = new Semaphore(parallelism);
+	}
+
+	CompletableFuture<Collection<Customer>> findByIdAsync(Iterable<Integer> ids) {
+		return CompletableFuture.supplyAsync(() -> findById(ids), this.executor);
+	}
+
+	CompletableFuture<Collection<Customer>> findAllAsync() {
+		return CompletableFuture.supplyAsync(this.repository::findAll, this.executor);
+	}
+
+	CompletableFuture<Collection<Customer>> saveAllAsync(Collection<Customer> customers) {
+		return CompletableFuture.supplyAsync(() -> this.repository.saveAll(customers), this.executor);
+	}
+
+	@Override
+	public void close() {
+		this.executor.close();
+	}
+
+	private Collection<Customer> findById(Iterable<Integer> ids) {
+		var distinct = new LinkedHashSet<Integer>();
+		ids.forEach(distinct::add);
+		var order = new ArrayList<>(distinct);
+		var chunks = new ArrayList<List<Integer>>();
+		for (var from = 0; from < order.size(); from += this.chunkSize) {
+			chunks.add(order.subList(from, Math.min(order.size(), from + this.chunkSize)));
+		}
+		var found = new HashMap<Integer, Customer>();
+		if (chunks.size() <= 1) {
+			// nothing to overlap, so stay on this thread
+			chunks.forEach(chunk -> this.repository.findById(chunk).forEach(c -> found.put(c.id(), c)));
+		}
+		else {
+			lookUpInParallel(chunks).forEach(customers -> customers.forEach(c -> found.put(c.id(), c)));
+		}
+		var customers = new ArrayList<Customer>(found.size());
+		for (var id : order) {
+			var customer = found.get(id);
+			if (customer != null) {
+				customers.add(customer);
+			}
+		}
+		return customers;
+	}
+
+	private List<Collection<Customer>> lookUpInParallel(List<List<Integer>> chunks) {
+		try (var scope = Executors.newVirtualThreadPerTaskExecutor()) {
+			// taken as they complete, so the first failure cancels the rest straight away
+			var completed = new ExecutorCompletionService<Collection<Customer>>(scope);
+			var futures = new ArrayList<Future<Collection<Customer>>>();
+			for (var chunk : chunks) {
+				futures.add(completed.submit(limited(() -> this.repository.findById(chunk))));
+			}
+			var results = new ArrayList<Collection<Customer>>(futures.size());
+			try {
+				for (var i = 0; i < futures.size(); i++) {
+					results.add(completed.take().get());
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted looking up customers", e);
+			}
+			catch (ExecutionException e) {
+				if (e.getCause() instanceof RuntimeException runtimeException) {
+					throw runtimeException;
+				}
+				throw new IllegalStateException(e.getCause());
+			}
+			finally {
+				futures.forEach(future -> future.cancel(true));
+			}
+			return results;
+		}
+	}
+
+	private <T> Callable<T> limited(Callable<T> callable) {
+		return () -> {
+			this.permits.acquire();
+			try {
+				return callable.call();
+			}
+			finally {
+				this.permits.release();
+			}
+		};
+	}
+
+}
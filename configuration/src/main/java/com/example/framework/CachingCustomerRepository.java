@@ -0,0 +1,190 @@
+package com.example.framework;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jspecify.annotations.Nullable;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+/**
+ * Read-through cache in front of {@link CustomerRepository#findById(Iterable)}. It
+ * decorates another {@link CustomerRepository} the same way
+ * {@link Transactions#transactional} does: hot ids are answered from memory, and a
+ * batch lookup sends only the ids it doesn't have to the delegate, in a single query.
+ * <p>
+ * The cache holds at most {@code maximumSize} customers and evicts the least recently
+ * used one when it is full. With a positive time-to-live, entries older than that are
+ * treated as missing. {@link #saveAll(Collection)} puts the saved customers in the cache
+ * so they're served without a read-back.
+ * <p>
+ * Given a {@link MeterRegistry}, the cache counts its hits, misses and evictions as
+ * {@code customer.cache.hits}, {@code customer.cache.misses} and
+ * {@code customer.cache.evictions}, and gauges how many customers it holds as
+ * {@code customer.cache.size}.
+ */
+class CachingCustomerRepository implements CustomerRepository, AutoCloseable {
+
+	private final CustomerRepository repository;
+
+	private final long timeToLiveNanos;
+
+	private final LongSupplier clock;
+
+	private final ReentrantLock lock = new ReentrantLock();
+
+	private final Map<Integer, Entry> entries;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	private final LongAdder evictions = new LongAdder();
+
+	CachingCustomerRepository(CustomerRepository repository, int maximumSize, Duration timeToLive,
+			@Nullable MeterRegistry meterRegistry) {
+		this(repository, maximumSize, timeToLive, System::nanoTime, meterRegistry);
+	}
+
+	CachingCustomerRepository(CustomerRepository repository, int maximumSize, Duration timeToLive,
+			LongSupplier clock, @Nullable MeterRegistry meterRegistry) {
+		Assert.isTrue(maximumSize > 0, "the maximum size must be greater than zero");
+		this.repository = repository;
+		this.timeToLiveNanos = timeToLive.toNanos();
+		this.clock = clock;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+				var evict = size() > maximumSize;
+				if (evict) {
+					evictions.increment();
+				}
+				return evict;
+			}
+
+		};
+		if (meterRegistry != null) {
+			FunctionCounter.builder("customer.cache.hits", this.hits, LongAdder::sum).register(meterRegistry);
+			FunctionCounter.builder("customer.cache.misses", this.misses, LongAdder::sum).register(meterRegistry);
+			FunctionCounter.builder("customer.cache.evictions", this.evictions, LongAdder::sum)
+				.register(meterRegistry);
+			Gauge.builder("customer.cache.size", this, CachingCustomerRepository::size).register(meterRegistry);
+		}
+	}
+
+	@Override
+	public Collection<Customer> findById(Iterable<Integer> ids) {
+		var found = new ArrayList<Customer>();
+		var missing = new ArrayList<Integer>();
+		var now = this.clock.getAsLong();
+		this.lock.lock();
+		try {
+			for (var id : ids) {
+				var entry = this.entries.get(id);
+				if (entry == null) {
+					missing.add(id);
+				}
+				else if (entry.isExpired(now)) {
+					this.entries.remove(id);
+					this.evictions.increment();
+					missing.add(id);
+				}
+				else {
+					found.add(entry.customer());
+				}
+			}
+		}
+		finally {
+			this.lock.unlock();
+		}
+		this.hits.add(found.size());
+		this.misses.add(missing.size());
+		if (!missing.isEmpty()) {
+			var loaded = this.repository.findById(missing);
+			put(loaded);
+			found.addAll(loaded);
+		}
+		return found;
+	}
+
+	@Override
+	public Collection<Customer> saveAll(Collection<Customer> customers) {
+		var saved = this.repository.saveAll(customers);
+		put(saved);
+		return saved;
+	}
+
+	@Override
+	public Collection<Customer> findAll() {
+		return this.repository.findAll();
+	}
+
+	@Override
+	public void scanAll(Consumer<Customer> consumer) {
+		this.repository.scanAll(consumer);
+	}
+
+	@Override
+	public CustomerPage findPage(@Nullable Integer afterId, int limit) {
+		return this.repository.findPage(afterId, limit);
+	}
+
+	// COPY doesn't hand back the generated ids, and new ids can't be stale, so there's
+	// nothing to populate or invalidate
+	@Override
+	public BulkLoadResult bulkLoad(Stream<Customer> customers) {
+		return this.repository.bulkLoad(customers);
+	}
+
+	// the context only sees this decorator, so it passes shutdown on to the repository
+	// behind it
+	@Override
+	public void close() throws Exception {
+		if (this.repository instanceof AutoCloseable closeable) {
+			closeable.close();
+		}
+	}
+
+	private int size() {
+		this.lock.lock();
+		try {
+			return this.entries.size();
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	private void put(Collection<Customer> customers) {
+		var expiresAt = this.timeToLiveNanos > 0 ? this.clock.getAsLong() + this.timeToLiveNanos : 0;
+		this.lock.lock();
+		try {
+			for (var customer : customers) {
+				this.entries.put(customer.id(), new Entry(customer, expiresAt));
+			}
+		}
+		finally {
+			this.lock.unlock();
+		}
+	}
+
+	private record Entry(Customer customer, long expiresAt) {
+
+		boolean isExpired(long now) {
+			return this.expiresAt != 0 && now - this.expiresAt >= 0;
+		}
+
+	}
+
+}
@@ -0,0 +1,194 @@
+package com.example.framework;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.jspecify.annotations.Nullable;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Group commit for {@link #saveAll(Collection)}: concurrent callers are queued, and a
+ * single writer collects their customers for up to {@code maxRows} rows or
+ * {@code maxDelay} after the first of them arrived, then saves them all with one call to
+ * the repository behind it, in one transaction. Each caller blocks until that
+ * transaction commits and gets back only its own saved customers; if the batch fails,
+ * every caller in it gets the failure.
+ * <p>
+ * The write happens on the writer's thread, so it doesn't join a transaction the caller
+ * may have open. Everything other than {@code saveAll} goes straight through.
+ */
+class CoalescingCustomerRepository implements CustomerRepository, AutoCloseable {
+
+	private final CustomerRepository repository;
+
+	private final int maxRows;
+
+	private final long maxDelayNanos;
+
+	private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+
+	private final @Nullable DistributionSummary batchSize;
+
+	private final @Nullable Timer queueWait;
+
+	private final Thread writer;
+
+	private volatile boolean running = true;
+
+	CoalescingCustomerRepository(CustomerRepository repository, int maxRows, Duration maxDelay,
+			@Nullable MeterRegistry meterRegistry) {
+		Assert.isTrue(maxRows > 0, "the maximum number of rows must be greater than zero");
+		this.repository = repository;
+		this.maxRows = maxRows;
+		this.maxDelayNanos = maxDelay.toNanos();
+		if (meterRegistry != null) {
+			this.batchSize = DistributionSummary.builder("customer.coalescer.batch.size")
+				.baseUnit("rows")
+				.register(meterRegistry);
+			this.queueWait = Timer.builder("customer.coalescer.queue.wait").register(meterRegistry);
+		}
+		else {
+			this.batchSize = null;
+			this.queueWait = null;
+		}
+		this.writer = Thread.ofVirtual().name("customer-coalescer").start(this::drain);
+	}
+
+	@Override
+	public Collection<Customer> saveAll(Collection<Customer> customers) {
+		if (customers.isEmpty()) {
+			return List.of();
+		}
+		Assert.state(this.running, "the coalescer has been closed");
+		var request = new Request(List.copyOf(customers), System.nanoTime(), new CompletableFuture<>());
+		this.queue.add(request);
+		// close() may have run between the check and the add, after the writer and close()
+		// last looked at the queue; whichever takes the request back fails it
+		if (!this.running && this.queue.remove(request)) {
+			request.result().completeExceptionally(new IllegalStateException("the coalescer has been closed"));
+		}
+		try {
+			return request.result().join();
+		}
+		catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw e;
+		}
+	}
+
+	@Override
+	public Collection<Customer> findAll() {
+		return this.repository.findAll();
+	}
+
+	@Override
+	public void scanAll(Consumer<Customer> consumer) {
+		this.repository.scanAll(consumer);
+	}
+
+	@Override
+	public CustomerPage findPage(@Nullable Integer afterId, int limit) {
+		return this.repository.findPage(afterId, limit);
+	}
+
+	@Override
+	public BulkLoadResult bulkLoad(Stream<Customer> customers) {
+		return this.repository.bulkLoad(customers);
+	}
+
+	@Override
+	public Collection<Customer> findById(Iterable<Integer> ids) {
+		return this.repository.findById(ids);
+	}
+
+	// stops taking requests, writes what's already queued, then closes the repository
+	// behind it
+	@Override
+	public void close() throws Exception {
+		this.running = false;
+		this.writer.join();
+		for (Request request; (request = this.queue.poll()) != null;) {
+			request.result().completeExceptionally(new IllegalStateException("the coalescer has been closed"));
+		}
+		if (this.repository instanceof AutoCloseable closeable) {
+			closeable.close();
+		}
+	}
+
+	private void drain() {
+		var batch = new ArrayList<Request>();
+		while (this.running || !this.queue.isEmpty()) {
+			try {
+				var first = this.queue.poll(100, TimeUnit.MILLISECONDS);
+				if (first == null) {
+					continue;
+				}
+				batch.add(first);
+				var rows = first.customers().size();
+				var deadline = first.enqueued() + this.maxDelayNanos;
+				while (rows < this.maxRows) {
+					var remaining = deadline - System.nanoTime();
+					var next = remaining > 0 ? this.queue.poll(remaining, TimeUnit.NANOSECONDS) : this.queue.poll();
+					if (next == null) {
+						break;
+					}
+					batch.add(next);
+					rows += next.customers().size();
+				}
+			}
+			catch (InterruptedException _) {
+				this.running = false;
+			}
+			if (!batch.isEmpty()) {
+				write(batch);
+				batch.clear();
+			}
+		}
+	}
+
+	private void write(List<Request> batch) {
+		var now = System.nanoTime();
+		var customers = new ArrayList<Customer>();
+		for (var request : batch) {
+			customers.addAll(request.customers());
+			if (this.queueWait != null) {
+				this.queueWait.record(now - request.enqueued(), TimeUnit.NANOSECONDS);
+			}
+		}
+		if (this.batchSize != null) {
+			this.batchSize.record(customers.size());
+		}
+		try {
+			var saved = List.copyOf(this.repository.saveAll(customers));
+			Assert.state(saved.size() == customers.size(),
+					() -> "saved " + saved.size() + " customers but expected " + customers.size());
+			var from = 0;
+			for (var request : batch) {
+				var to = from + request.customers().size();
+				request.result().complete(saved.subList(from, to));
+				from = to;
+			}
+		}
+		catch (RuntimeException e) {
+			batch.forEach(request -> request.result().completeExceptionally(e));
+		}
+	}
+
+	private record Request(List<Customer> customers, long enqueued, CompletableFuture<Collection<Customer>> result) {
+	}
+
+}
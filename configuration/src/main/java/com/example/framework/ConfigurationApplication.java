@@ -2,42 +2,63 @@ package com.example.framework;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.jspecify.annotations.NonNull;
 import org.jspecify.annotations.Nullable;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.beans.factory.BeanRegistrar;
 import org.springframework.beans.factory.BeanRegistry;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
 import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
 import org.springframework.context.annotation.*;
 import org.springframework.context.event.EventListener;
+import org.springframework.context.event.SimpleApplicationEventMulticaster;
+import org.springframework.context.support.AbstractApplicationContext;
 import org.springframework.core.annotation.AliasFor;
 import org.springframework.core.env.Environment;
+import org.springframework.format.datetime.standard.DurationFormatterUtils;
+import org.springframework.jdbc.UncategorizedSQLException;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
 import org.springframework.jdbc.support.SqlArrayValue;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+import tools.jackson.databind.json.JsonMapper;
 
 import javax.sql.DataSource;
 import java.lang.annotation.*;
 import java.lang.reflect.Array;
-import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 // dependency injection
 // portable service abstractions
@@ -53,7 +74,21 @@ public class ConfigurationApplication {
 
 	public static void main0(String[] args) throws Exception {
 
-		var applicationContext = new AnnotationConfigApplicationContext(CustomerJavaConfiguration.class);
+		// -Dcustomer.registrar=true registers the customer stack through CustomerBeanRegistrar
+		// instead of scanning for it and calling the @Bean methods reflectively
+		var configuration = Boolean.getBoolean("customer.registrar") ? CustomerRegistrarConfiguration.class
+				: CustomerJavaConfiguration.class;
+		// scans instead of reading a component index the classes have outgrown
+		ComponentIndex.verify(ConfigurationApplication.class.getClassLoader());
+		// -Dcustomer.bootstrap.parallel=true creates the singletons that don't depend on each
+		// other concurrently, on virtual threads unless customer.bootstrap.parallelism is set
+		var beanFactory = Boolean.getBoolean("customer.bootstrap.parallel")
+				? new ParallelBeanFactory(Integer.getInteger("customer.bootstrap.parallelism", 0),
+						DurationFormatterUtils.detectAndParse(System.getProperty("customer.bootstrap.timeout", "60s")))
+				: new DefaultListableBeanFactory();
+		var applicationContext = new AnnotationConfigApplicationContext(beanFactory);
+		applicationContext.register(configuration);
+		applicationContext.refresh();
 		applicationContext.start();
 		var runner = applicationContext.getBean(CustomerRepositoryRunner.class);
 		runner.run(args);
@@ -77,18 +112,94 @@ public class ConfigurationApplication {
 // component scanning - implicit
 // BeanRegistrar (new in Spring Framework 7)
 
+/**
+ * Registers the customer stack, from the {@link DataSource} to the
+ * {@link CustomerRepositoryRunner}, with a supplier per bean, so nothing is scanned for,
+ * no constructor is resolved and no factory method is invoked reflectively. The beans are
+ * built by the {@code @Bean} methods of {@link CustomerJavaConfiguration}, called as
+ * plain methods on an instance that isn't enhanced, so both ways of registering them
+ * read the same properties and end up with the same beans.
+ * <p>
+ * Only imported by {@link CustomerRegistrarConfiguration}, which passes on the bean
+ * factory and the event publisher; the scanned components such as the event producer and
+ * consumer aren't registered.
+ */
 class CustomerBeanRegistrar implements BeanRegistrar {
 
 	@Override
 	public void register(@NonNull BeanRegistry registry, @NonNull Environment env) {
+		// none of the methods used here calls another, so there's no need for the proxy
+		var configuration = new CustomerJavaConfiguration();
+		registry.registerBean("meterRegistry", MeterRegistry.class,
+				spec -> spec.supplier(_ -> configuration.meterRegistry()));
+		// the bean factory and the publisher aren't beans a supplier can look up, so they're
+		// handed to the configuration class that imports this
+		registry.registerBean(AbstractApplicationContext.APPLICATION_EVENT_MULTICASTER_BEAN_NAME,
+				SimpleApplicationEventMulticaster.class,
+				spec -> spec.supplier(context -> configuration.applicationEventMulticaster(
+						context.bean(CustomerRegistrarConfiguration.class).beanFactory(), env,
+						context.beanProvider(MeterRegistry.class))));
+		registry.registerBean("dataSource", DataSource.class,
+				spec -> spec.supplier(context -> configuration.dataSource(
+						env.getRequiredProperty("spring.datasource.username"), env,
+						context.beanProvider(MeterRegistry.class))));
+		registry.registerBean("jdbcClient", JdbcClient.class,
+				spec -> spec.supplier(context -> configuration.jdbcClient(context.bean(DataSource.class))));
+		registry.registerBean("platformTransactionManager", PlatformTransactionManager.class,
+				spec -> spec.supplier(
+						context -> configuration.platformTransactionManager(context.bean(DataSource.class))));
+		registry.registerBean("transactionTemplate", TransactionTemplate.class,
+				spec -> spec.supplier(context -> configuration
+					.transactionTemplate(context.bean(PlatformTransactionManager.class))));
+		registry.registerBean("outbox", Outbox.class,
+				spec -> spec.supplier(context -> configuration.outbox(context.bean(JdbcClient.class))));
+		registry.registerBean("outboxDrainer", OutboxDrainer.class,
+				spec -> spec.supplier(context -> configuration.outboxDrainer(context.bean(Outbox.class),
+						context.bean(TransactionTemplate.class),
+						context.bean(CustomerRegistrarConfiguration.class).publisher(),
+						context.bean(AbstractApplicationContext.APPLICATION_EVENT_MULTICASTER_BEAN_NAME,
+								SimpleApplicationEventMulticaster.class),
+						env, context.beanProvider(MeterRegistry.class))));
+		registry.registerBean("customerRepository", CustomerRepository.class,
+				spec -> spec.supplier(context -> configuration.customerRepository(context.bean(JdbcClient.class),
+						context.bean(DataSource.class), context.bean(TransactionTemplate.class), env,
+						context.beanProvider(MeterRegistry.class), context.bean(Outbox.class))));
+		registry.registerBean("asyncCustomerRepository", AsyncCustomerRepository.class,
+				spec -> spec.supplier(context -> configuration
+					.asyncCustomerRepository(context.bean(CustomerRepository.class), env)));
+		registry.registerBean("fooRunner", CustomerRepositoryRunner.class,
+				spec -> spec.supplier(context -> configuration.fooRunner(context.bean(CustomerRepository.class))));
+	}
 
-		/*
-		 * registry.registerBean(CustomerRepositoryRunner.class, spec -> spec
-		 * .supplier(supplierContext -> { var repository =
-		 * supplierContext.bean(CustomerRepository.class) ; return new
-		 * CustomerRepositoryRunner(repository ); }));
-		 */
+}
+
+// not a @Configuration, so neither CustomerJavaConfiguration's scan nor CGLIB picks it up
+@PropertySource("application.properties")
+@Import(CustomerBeanRegistrar.class)
+class CustomerRegistrarConfiguration implements BeanFactoryAware, ApplicationEventPublisherAware {
+
+	private @Nullable BeanFactory beanFactory;
+
+	private @Nullable ApplicationEventPublisher publisher;
+
+	@Override
+	public void setBeanFactory(BeanFactory beanFactory) {
+		this.beanFactory = beanFactory;
+	}
+
+	@Override
+	public void setApplicationEventPublisher(ApplicationEventPublisher publisher) {
+		this.publisher = publisher;
+	}
 
+	BeanFactory beanFactory() {
+		Assert.state(this.beanFactory != null, "no bean factory");
+		return this.beanFactory;
+	}
+
+	ApplicationEventPublisher publisher() {
+		Assert.state(this.publisher != null, "no application event publisher");
+		return this.publisher;
 	}
 
 }
@@ -179,7 +290,6 @@ class FooBarConfiguration {
 @PropertySource("application.properties")
 @ComponentScan
 @Configuration
-@Import({ CustomerBeanRegistrar.class })
 class CustomerJavaConfiguration {
 
 	// @Bean
@@ -208,11 +318,62 @@ class CustomerJavaConfiguration {
 	}
 
 	@Bean
-	DriverManagerDataSource driverManagerDataSource(@Value("${spring.datasource.username}") String username,
-			Environment environment) {
+	MeterRegistry meterRegistry() {
+		return new SimpleMeterRegistry();
+	}
+
+	// the context looks this up by name, before it creates the other singletons
+	@Bean(name = AbstractApplicationContext.APPLICATION_EVENT_MULTICASTER_BEAN_NAME)
+	SimpleApplicationEventMulticaster applicationEventMulticaster(BeanFactory beanFactory, Environment environment,
+			ObjectProvider<MeterRegistry> meterRegistry) {
+		if (!environment.getProperty("customer.events.async.enabled", Boolean.class, false)) {
+			var indexed = environment.getProperty("customer.events.listener-index.enabled", Boolean.class, true);
+			return indexed ? new IndexedApplicationEventMulticaster(beanFactory)
+					: new SimpleApplicationEventMulticaster(beanFactory);
+		}
+		var partitions = environment.getProperty("customer.events.async.partitions", Integer.class, 4);
+		var queueCapacity = environment.getProperty("customer.events.async.queue-capacity", Integer.class, 1024);
+		var overflow = environment.getProperty("customer.events.async.overflow",
+				AsyncApplicationEventMulticaster.Overflow.class, AsyncApplicationEventMulticaster.Overflow.BLOCK);
+		return new AsyncApplicationEventMulticaster(beanFactory, partitions, queueCapacity, overflow,
+				meterRegistry.getIfAvailable());
+	}
+
+	// EventProducer publishes here instead of through the context when it's enabled
+	@Bean
+	RingBufferEventBus<UserAuthenticatedEvent> authenticationEventBus(Environment environment,
+			ObjectProvider<MeterRegistry> meterRegistry) {
+		var bufferSize = environment.getProperty("customer.events.ring-buffer.size", Integer.class, 65_536);
+		var bus = new RingBufferEventBus<>(UserAuthenticatedEvent.class, bufferSize, meterRegistry.getIfAvailable());
+		bus.setAutoStartup(environment.getProperty("customer.events.ring-buffer.enabled", Boolean.class, false));
+		return bus;
+	}
+
+	@Bean
+	DataSource dataSource(@Value("${spring.datasource.username}") String username, Environment environment,
+			ObjectProvider<MeterRegistry> meterRegistry) {
 		var pw = environment.getProperty("spring.datasource.password");
 		var url = environment.getProperty("spring.datasource.url");
-		return new DriverManagerDataSource(url, username, pw);
+		var pooled = environment.getProperty("customer.datasource.pool.enabled", Boolean.class, true);
+		var registry = meterRegistry.getIfAvailable();
+		var primary = pooled ? DataSources.pooled(environment, "customer", url, username, pw, registry)
+				: new DriverManagerDataSource(url, username, pw);
+		var replicaUrls = environment.getProperty("customer.datasource.replicas", String[].class, new String[0]);
+		if (replicaUrls.length == 0) {
+			return primary;
+		}
+		var replicas = new ArrayList<DataSource>();
+		for (var i = 0; i < replicaUrls.length; i++) {
+			var poolName = "customer-replica-" + i;
+			replicas.add(pooled ? DataSources.replica(environment, poolName, replicaUrls[i], username, pw, registry)
+					: new DriverManagerDataSource(replicaUrls[i], username, pw));
+		}
+		var selection = environment.getProperty("customer.datasource.replica-selection",
+				ReplicaRoutingDataSource.Selection.class, ReplicaRoutingDataSource.Selection.ROUND_ROBIN);
+		var retryAfter = environment.getProperty("customer.datasource.replica-retry-after", "5s");
+		var router = new ReplicaRoutingDataSource(primary, replicas, selection,
+				DurationFormatterUtils.detectAndParse(retryAfter));
+		return DataSources.readWriteSplitting(primary, router);
 	}
 
 	@Bean
@@ -231,9 +392,82 @@ class CustomerJavaConfiguration {
 	}
 
 	@Bean
-	CustomerRepository customerRepository(JdbcClient jdbcClient, TransactionTemplate transactionTemplate) {
-		var raw = new JdbcCustomerRepository(jdbcClient);
-		return Transactions.transactional(transactionTemplate, raw);
+	Outbox outbox(JdbcClient jdbcClient) {
+		return new Outbox(jdbcClient, JsonMapper.shared(), List.of(CustomerSavedEvent.class));
+	}
+
+	// drains the outbox into the context's listeners when customer.outbox.enabled is set
+	@Bean
+	OutboxDrainer outboxDrainer(Outbox outbox, TransactionTemplate transactionTemplate,
+			ApplicationEventPublisher publisher, SimpleApplicationEventMulticaster applicationEventMulticaster,
+			Environment environment, ObjectProvider<MeterRegistry> meterRegistry) {
+		// an asynchronous multicaster would only queue the events, and could drop them, before
+		// the outbox rows are deleted
+		if (applicationEventMulticaster instanceof AsyncApplicationEventMulticaster async) {
+			var asynchronous = publisher;
+			publisher = event -> async.inline(() -> asynchronous.publishEvent(event));
+		}
+		var batchSize = environment.getProperty("customer.outbox.batch-size", Integer.class, 100);
+		var pollInterval = environment.getProperty("customer.outbox.poll-interval", "500ms");
+		var concurrency = environment.getProperty("customer.outbox.concurrency", Integer.class, 2);
+		var drainer = new OutboxDrainer(outbox, transactionTemplate, publisher, batchSize,
+				DurationFormatterUtils.detectAndParse(pollInterval), concurrency, meterRegistry.getIfAvailable());
+		drainer.setAutoStartup(environment.getProperty("customer.outbox.enabled", Boolean.class, false));
+		return drainer;
+	}
+
+	@Bean
+	CustomerRepository customerRepository(JdbcClient jdbcClient, DataSource dataSource,
+			TransactionTemplate transactionTemplate, Environment environment,
+			ObjectProvider<MeterRegistry> meterRegistry, Outbox outbox) {
+		var repository = repository(jdbcClient, dataSource, transactionTemplate, environment, meterRegistry, outbox);
+		if (environment.getProperty("customer.coalescer.enabled", Boolean.class, false)) {
+			var maxRows = environment.getProperty("customer.coalescer.max-rows", Integer.class, 500);
+			var maxDelay = environment.getProperty("customer.coalescer.max-delay", "5ms");
+			repository = new CoalescingCustomerRepository(repository, maxRows,
+					DurationFormatterUtils.detectAndParse(maxDelay), meterRegistry.getIfAvailable());
+		}
+		if (!environment.getProperty("customer.cache.enabled", Boolean.class, false)) {
+			return repository;
+		}
+		// the cache sits outside the transaction so a hit never touches a connection
+		var maximumSize = environment.getProperty("customer.cache.maximum-size", Integer.class, 10_000);
+		var timeToLive = environment.getProperty("customer.cache.time-to-live");
+		return new CachingCustomerRepository(repository, maximumSize,
+				timeToLive == null ? Duration.ZERO : DurationFormatterUtils.detectAndParse(timeToLive),
+				meterRegistry.getIfAvailable());
+	}
+
+	@Bean
+	AsyncCustomerRepository asyncCustomerRepository(CustomerRepository customerRepository, Environment environment) {
+		var chunkSize = environment.getProperty("customer.async.chunk-size", Integer.class, 1000);
+		var parallelism = environment.getProperty("customer.async.parallelism", Integer.class, 8);
+		return new AsyncCustomerRepository(customerRepository, chunkSize, parallelism);
+	}
+
+	private static CustomerRepository repository(JdbcClient jdbcClient, DataSource dataSource,
+			TransactionTemplate transactionTemplate, Environment environment,
+			ObjectProvider<MeterRegistry> meterRegistry, Outbox outbox) {
+		var shardUrls = environment.getProperty("customer.sharding.urls", String[].class, new String[0]);
+		var outboxEnabled = environment.getProperty("customer.outbox.enabled", Boolean.class, false);
+		if (shardUrls.length > 0) {
+			// the shards commit on their own databases, which have no outbox table to write to
+			Assert.state(!outboxEnabled, "customer.outbox.enabled isn't supported with customer.sharding.urls");
+			return ShardedCustomerRepository.from(environment, shardUrls,
+					environment.getRequiredProperty("spring.datasource.username"),
+					environment.getProperty("spring.datasource.password"), meterRegistry.getIfAvailable());
+		}
+		var batchSize = environment.getProperty("customer.jdbc.batch-size", Integer.class,
+				JdbcCustomerRepository.DEFAULT_BATCH_SIZE);
+		var fetchSize = environment.getProperty("customer.jdbc.fetch-size", Integer.class,
+				JdbcCustomerRepository.DEFAULT_FETCH_SIZE);
+		CustomerRepository raw = new JdbcCustomerRepository(jdbcClient, dataSource, batchSize, fetchSize);
+		if (outboxEnabled) {
+			// inside the transaction, so the events commit with the customers
+			raw = new OutboxCustomerRepository(raw, outbox);
+		}
+		var metrics = environment.getProperty("customer.metrics.enabled", Boolean.class, true);
+		return Transactions.transactional(transactionTemplate, raw, metrics ? meterRegistry.getIfAvailable() : null);
 	}
 
 }
@@ -253,17 +487,31 @@ class EventProducer /* implements ApplicationEventPublisherAware */ {
 
 	private final ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor();
 
-	EventProducer(ApplicationEventPublisher publisher) {
+	EventProducer(ApplicationEventPublisher publisher, RingBufferEventBus<UserAuthenticatedEvent> bus) {
 		this.service.schedule(() -> {
 			var jlong = new UserAuthenticatedEvent(Instant.now(), "jlong");
-			publisher.publishEvent(jlong);
+			// through the context if the bus is off, or stopped since
+			if (!bus.isRunning() || !bus.publish(jlong)) {
+				publisher.publishEvent(jlong);
+			}
 		}, 1L, TimeUnit.SECONDS);
 
 	}
 
 }
 
-record UserAuthenticatedEvent(Instant when, String username) {
+// listeners see each user's events in the order they happened
+record UserAuthenticatedEvent(Instant when, String username) implements Keyed {
+
+	@Override
+	public Object orderingKey() {
+		return this.username;
+	}
+
+}
+
+// written to the outbox by saveAll, and published once the customer is committed
+record CustomerSavedEvent(Integer id, String name) {
 }
 
 // UML (unified modeling language)
@@ -368,36 +616,27 @@ class CustomerRepositoryRunner {
 	}
 
 	void run(String[] args) throws Exception {
-		repository.findAll().forEach(IO::println);
+		repository.scanAll(IO::println);
 		var saved = repository.saveAll(List.of(new Customer(null, "Alexey"), new Customer(null, "Josh")));
 		saved.forEach(IO::println);
 	}
 
 }
 
-abstract class Transactions {
-
-	static <T> T transactional(TransactionTemplate transactionTemplate, T target) {
-		return (T) Proxy.newProxyInstance(target.getClass().getClassLoader(), target.getClass().getInterfaces(),
-				(_, method, args) -> {
-					return transactionTemplate.execute(_ -> {
-						try {
-							IO.println("calling " + method.getName() + " with arguments " + Arrays.toString(args));
-							return method.invoke(target, args);
-						} //
-						catch (Exception e) {
-							throw new RuntimeException(e);
-						}
-					});
-				});
+interface CustomerRepository {
 
-	}
+	Collection<Customer> findAll();
 
-}
+	// visits every customer without materializing the table; the consumer runs while the
+	// cursor is open, so it mustn't hold on to the rows it is given
+	void scanAll(Consumer<Customer> consumer);
 
-interface CustomerRepository {
+	// keyset pagination on id: pass null for the first page, then the page's nextAfterId
+	CustomerPage findPage(@Nullable Integer afterId, int limit);
 
-	Collection<Customer> findAll();
+	// streams the customers into the table with COPY on the current transaction's
+	// connection; a failure part way through rolls back with the rest of the transaction
+	BulkLoadResult bulkLoad(Stream<Customer> customers);
 
 	Collection<Customer> findById(Iterable<Integer> ids);
 
@@ -413,19 +652,34 @@ class TransactionalCustomerRepository implements CustomerRepository {
 
 	private final TransactionTemplate transactionTemplate;
 
+	private final TransactionTemplate readOnlyTransactionTemplate;
+
 	TransactionalCustomerRepository(TransactionTemplate transactionTemplate, CustomerRepository repository) {
 		this.repository = repository;
 		this.transactionTemplate = transactionTemplate;
+		this.readOnlyTransactionTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager(),
+				transactionTemplate);
+		this.readOnlyTransactionTemplate.setReadOnly(true);
 	}
 
 	@Override
 	public Collection<Customer> findAll() {
-		return this.transactionTemplate.execute(_ -> this.repository.findAll());
+		return this.readOnlyTransactionTemplate.execute(_ -> this.repository.findAll());
+	}
+
+	@Override
+	public void scanAll(Consumer<Customer> consumer) {
+		this.readOnlyTransactionTemplate.executeWithoutResult(_ -> this.repository.scanAll(consumer));
+	}
+
+	@Override
+	public CustomerPage findPage(@Nullable Integer afterId, int limit) {
+		return this.readOnlyTransactionTemplate.execute(_ -> this.repository.findPage(afterId, limit));
 	}
 
 	@Override
 	public Collection<Customer> findById(Iterable<Integer> ids) {
-		return this.transactionTemplate.execute(_ -> this.repository.findById(ids));
+		return this.readOnlyTransactionTemplate.execute(_ -> this.repository.findById(ids));
 	}
 
 	@Override
@@ -433,16 +687,63 @@ class TransactionalCustomerRepository implements CustomerRepository {
 		return this.transactionTemplate.execute(_ -> repository.saveAll(customers));
 	}
 
+	@Override
+	public BulkLoadResult bulkLoad(Stream<Customer> customers) {
+		return this.transactionTemplate.execute(_ -> this.repository.bulkLoad(customers));
+	}
+
 }
 
 class JdbcCustomerRepository implements CustomerRepository {
 
 	private final RowMapper<Customer> rowMapper = (rs, _) -> new Customer(rs.getInt("id"), rs.getString("name"));
 
+	static final int DEFAULT_BATCH_SIZE = 500;
+
+	static final int DEFAULT_FETCH_SIZE = 1000;
+
+	private static final String INSERT_SQL = "insert into customer (name) select * from unnest(?) returning id, name";
+
+	private static final String COPY_SQL = "copy customer (name) from stdin with (format csv)";
+
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
 	private final JdbcClient db;
 
-	JdbcCustomerRepository(JdbcClient jdbcClient) {
+	private final DataSource dataSource;
+
+	private final SQLExceptionTranslator exceptionTranslator;
+
+	private final int batchSize;
+
+	private final int fetchSize;
+
+	private final String insertSql;
+
+	JdbcCustomerRepository(JdbcClient jdbcClient, DataSource dataSource, int batchSize, int fetchSize) {
+		this(jdbcClient, dataSource, batchSize, fetchSize, INSERT_SQL);
+	}
+
+	private JdbcCustomerRepository(JdbcClient jdbcClient, DataSource dataSource, int batchSize, int fetchSize,
+			String insertSql) {
+		Assert.isTrue(batchSize > 0, "the batch size must be greater than zero");
+		Assert.isTrue(fetchSize > 0, "the fetch size must be greater than zero");
 		this.db = jdbcClient;
+		this.dataSource = dataSource;
+		this.exceptionTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+		this.batchSize = batchSize;
+		this.fetchSize = fetchSize;
+		this.insertSql = insertSql;
+	}
+
+	// a repository for shard index of count: new ids come from the shard's own sequence,
+	// scaled so that id % count == index, which lets any id route straight back to its
+	// shard without a global sequence
+	static JdbcCustomerRepository forShard(JdbcClient jdbcClient, DataSource dataSource, int batchSize,
+			int fetchSize, int index, int count) {
+		var id = "nextval(pg_get_serial_sequence('customer', 'id')) * " + count + " + " + index;
+		return new JdbcCustomerRepository(jdbcClient, dataSource, batchSize, fetchSize,
+				"insert into customer (id, name) select " + id + ", name from unnest(?) as name returning id, name");
 	}
 
 	@Override
@@ -450,6 +751,37 @@ class JdbcCustomerRepository implements CustomerRepository {
 		return this.db.sql("select * from customer").query(this.rowMapper).list();
 	}
 
+	// postgres only opens a server-side cursor for a positive fetch size inside a
+	// transaction; otherwise the driver buffers the whole result set
+	@Transactional(readOnly = true)
+	@Override
+	public void scanAll(Consumer<Customer> consumer) {
+		try (var customers = this.db.sql("select * from customer")
+			.withFetchSize(this.fetchSize)
+			.query(this.rowMapper)
+			.stream()) {
+			customers.forEach(consumer);
+		}
+	}
+
+	// seeks straight to the first id after the cursor using the primary key index, so
+	// every page costs the same no matter how deep it is. one extra row is read to tell
+	// whether there's a next page
+	@Transactional(readOnly = true)
+	@Override
+	public CustomerPage findPage(@Nullable Integer afterId, int limit) {
+		Assert.isTrue(limit > 0, "the limit must be greater than zero");
+		var customers = this.db.sql("select * from customer where id > ? order by id limit ?")
+			.params(afterId == null ? Integer.MIN_VALUE : afterId, (long) limit + 1)
+			.query(this.rowMapper)
+			.list();
+		if (customers.size() <= limit) {
+			return new CustomerPage(customers, null);
+		}
+		var page = customers.subList(0, limit);
+		return new CustomerPage(page, page.getLast().id());
+	}
+
 	@Override
 	public Collection<Customer> findById(Iterable<Integer> ids) {
 		return this.db.sql("select * from customer where id = any(?)")
@@ -458,19 +790,79 @@ class JdbcCustomerRepository implements CustomerRepository {
 			.list();
 	}
 
+	// one multi-row insert per chunk: the names travel as a single array parameter and
+	// the generated rows come straight back from RETURNING, so there's no second select
 	@Override
 	public Collection<Customer> saveAll(Collection<Customer> customers) {
-		var ids = new ArrayList<Integer>();
-		var counter = 0;
+		var saved = new ArrayList<Customer>(customers.size());
+		var names = new ArrayList<String>(Math.min(customers.size(), this.batchSize));
 		for (var c : customers) {
-			var keyHolder = new GeneratedKeyHolder();
-			// if (counter == 1) throw new IllegalStateException("ooops!");
-			this.db.sql("insert into customer ( name) values (?)").params(c.name()).update(keyHolder);
-			var id = (Number) keyHolder.getKeyList().getFirst().get("id");
-			ids.add(id.intValue());
-			counter++;
+			names.add(c.name());
+			if (names.size() == this.batchSize) {
+				saved.addAll(insert(names));
+				names.clear();
+			}
 		}
-		return findById(ids);
+		if (!names.isEmpty()) {
+			saved.addAll(insert(names));
+		}
+		return saved;
+	}
+
+	// the rows are written as csv in 64k chunks straight from the stream, so memory stays
+	// flat however many customers there are
+	@Override
+	public BulkLoadResult bulkLoad(Stream<Customer> customers) {
+		// COPY can only fill in the column default, which isn't shard-aware
+		Assert.state(this.insertSql.equals(INSERT_SQL), "bulkLoad isn't supported on a shard");
+		var start = System.nanoTime();
+		var connection = DataSourceUtils.getConnection(this.dataSource);
+		try {
+			var copy = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+			try {
+				var buffer = new StringBuilder(COPY_BUFFER_SIZE);
+				for (var iterator = customers.iterator(); iterator.hasNext();) {
+					var name = iterator.next().name();
+					if (name != null) {
+						buffer.append('"').append(name.replace("\"", "\"\"")).append('"');
+					}
+					buffer.append('\n');
+					if (buffer.length() >= COPY_BUFFER_SIZE) {
+						writeToCopy(copy, buffer);
+					}
+				}
+				writeToCopy(copy, buffer);
+				var rows = copy.endCopy();
+				return new BulkLoadResult(rows, Duration.ofNanos(System.nanoTime() - start));
+			}
+			finally {
+				if (copy.isActive()) {
+					copy.cancelCopy();
+				}
+			}
+		}
+		catch (SQLException e) {
+			var translated = this.exceptionTranslator.translate("bulkLoad", COPY_SQL, e);
+			throw translated != null ? translated : new UncategorizedSQLException("bulkLoad", COPY_SQL, e);
+		}
+		finally {
+			DataSourceUtils.releaseConnection(connection, this.dataSource);
+		}
+	}
+
+	private static void writeToCopy(CopyIn copy, StringBuilder buffer) throws SQLException {
+		if (!buffer.isEmpty()) {
+			var bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+			copy.writeToCopy(bytes, 0, bytes.length);
+			buffer.setLength(0);
+		}
+	}
+
+	private List<Customer> insert(List<String> names) {
+		return this.db.sql(this.insertSql)
+			.params(new SqlArrayValue("text", names.toArray()))
+			.query(this.rowMapper)
+			.list();
 	}
 
 	private <T> T[] from(Iterable<T> iterable) {
@@ -482,4 +874,27 @@ class JdbcCustomerRepository implements CustomerRepository {
 }
 
 record Customer(Integer id, String name) {
+}
+
+record BulkLoadResult(long rows, Duration elapsed) implements RepositoryMetrics.RowCount {
+
+	double rowsPerSecond() {
+		var nanos = this.elapsed.toNanos();
+		return nanos == 0 ? 0 : this.rows * 1_000_000_000.0 / nanos;
+	}
+
+}
+
+record CustomerPage(List<Customer> customers,
+		@Nullable Integer nextAfterId) implements RepositoryMetrics.RowCount {
+
+	boolean hasNext() {
+		return this.nextAfterId != null;
+	}
+
+	@Override
+	public long rows() {
+		return this.customers.size();
+	}
+
 }
\ No newline at end of file
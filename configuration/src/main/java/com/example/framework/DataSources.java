@@ -0,0 +1,276 @@
+package com.example.framework;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.jspecify.annotations.Nullable;
+import org.springframework.core.env.Environment;
+import org.springframework.format.datetime.standard.DurationFormatterUtils;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Builds the pooled {@link DataSource} for the customer stack from the
+ * {@code customer.datasource.pool.*} properties, instead of a
+ * {@code DriverManagerDataSource} that opens a new physical connection for every
+ * transaction.
+ */
+abstract class DataSources {
+
+	private static final String PREFIX = "customer.datasource.pool.";
+
+	static DataSource pooled(Environment environment, String poolName, String url, String username,
+			@Nullable String password, @Nullable MeterRegistry meterRegistry) {
+		var acquisitionTimeout = duration(environment, "acquisition-timeout", Duration.ofSeconds(30));
+		var validationTimeout = duration(environment, "validation-timeout", Duration.ofSeconds(5));
+		var config = config(environment, poolName, url, username, password, acquisitionTimeout, meterRegistry);
+		// fail at startup rather than on the first query if the database can't be reached
+		config.setInitializationFailTimeout(1);
+		var dataSource = new HikariDataSource(config);
+
+		if (environment.getProperty(PREFIX + "warm-up", Boolean.class, true)) {
+			try {
+				warmUp(dataSource, config.getMinimumIdle(), validationTimeout);
+			}
+			catch (RuntimeException e) {
+				// the pool is already running, with its housekeeping thread
+				dataSource.close();
+				throw e;
+			}
+		}
+		return permits(environment, dataSource, config.getMaximumPoolSize(), acquisitionTimeout, meterRegistry);
+	}
+
+	/**
+	 * Builds the pool for a replica, which unlike the primary's may be down: the pool
+	 * starts whether or not the replica can be reached, isn't warmed up, and gives up on a
+	 * connection after {@code replica-connection-timeout}, one second by default, so that
+	 * {@link ReplicaRoutingDataSource} marks it down and falls back to the primary quickly.
+	 */
+	static DataSource replica(Environment environment, String poolName, String url, String username,
+			@Nullable String password, @Nullable MeterRegistry meterRegistry) {
+		var connectionTimeout = duration(environment, "replica-connection-timeout", Duration.ofSeconds(1));
+		var config = config(environment, poolName, url, username, password, connectionTimeout, meterRegistry);
+		config.setInitializationFailTimeout(-1);
+		var dataSource = new HikariDataSource(config);
+		return permits(environment, dataSource, config.getMaximumPoolSize(), connectionTimeout, meterRegistry);
+	}
+
+	private static HikariConfig config(Environment environment, String poolName, String url, String username,
+			@Nullable String password, Duration connectionTimeout, @Nullable MeterRegistry meterRegistry) {
+		var config = new HikariConfig();
+		config.setPoolName(poolName);
+		config.setJdbcUrl(url);
+		config.setUsername(username);
+		config.setPassword(password);
+		config.setMinimumIdle(environment.getProperty(PREFIX + "minimum-idle", Integer.class, 2));
+		config.setMaximumPoolSize(environment.getProperty(PREFIX + "maximum-size", Integer.class, 10));
+		config.setConnectionTimeout(connectionTimeout.toMillis());
+		config.setIdleTimeout(duration(environment, "idle-timeout", Duration.ofMinutes(10)).toMillis());
+		config.setValidationTimeout(duration(environment, "validation-timeout", Duration.ofSeconds(5)).toMillis());
+		if (meterRegistry != null) {
+			// hikaricp.connections.acquire, .active, .idle, .pending and friends
+			config.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+		}
+		return config;
+	}
+
+	private static DataSource permits(Environment environment, HikariDataSource dataSource, int maximumSize,
+			Duration timeout, @Nullable MeterRegistry meterRegistry) {
+		if (environment.getProperty(PREFIX + "virtual-threads", Boolean.class, false)) {
+			return new PermitDataSource(dataSource, maximumSize, timeout, meterRegistry);
+		}
+		return dataSource;
+	}
+
+	/**
+	 * Sends read-only transactions to the replicas and everything else to the primary.
+	 * {@link LazyConnectionDataSourceProxy} holds off fetching the connection until the
+	 * first statement, by which time the transaction manager has marked it read-only.
+	 */
+	static DataSource readWriteSplitting(DataSource primary, ReplicaRoutingDataSource replicas) {
+		return new ReadWriteSplittingDataSource(primary, replicas);
+	}
+
+	// borrows and validates minimum-idle connections together, so they're all open before
+	// the first request needs one
+	private static void warmUp(HikariDataSource dataSource, int connections, Duration validationTimeout) {
+		var borrowed = new ArrayList<Connection>(connections);
+		try {
+			for (var i = 0; i < connections; i++) {
+				var connection = dataSource.getConnection();
+				borrowed.add(connection);
+				if (!connection.isValid((int) Math.max(1, validationTimeout.toSeconds()))) {
+					throw new SQLTransientConnectionException("connection " + i + " failed validation");
+				}
+			}
+		}
+		catch (SQLException e) {
+			throw new CannotGetJdbcConnectionException("couldn't warm up the customer connection pool", e);
+		}
+		finally {
+			for (var connection : borrowed) {
+				try {
+					connection.close();
+				}
+				catch (SQLException _) {
+					// the pool evicts it
+				}
+			}
+		}
+	}
+
+	private static Duration duration(Environment environment, String name, Duration defaultValue) {
+		var value = environment.getProperty(PREFIX + name);
+		return value == null ? defaultValue : DurationFormatterUtils.detectAndParse(value);
+	}
+
+	static final class ReadWriteSplittingDataSource extends LazyConnectionDataSourceProxy implements AutoCloseable {
+
+		private final ReplicaRoutingDataSource replicas;
+
+		ReadWriteSplittingDataSource(DataSource primary, ReplicaRoutingDataSource replicas) {
+			super(primary);
+			this.replicas = replicas;
+			setReadOnlyDataSource(replicas);
+		}
+
+		@Override
+		public void close() throws Exception {
+			this.replicas.close();
+			if (obtainTargetDataSource() instanceof AutoCloseable closeable) {
+				closeable.close();
+			}
+		}
+
+	}
+
+	/**
+	 * Lets only as many callers into the pool as there are connections. When thousands of
+	 * virtual threads want a connection at once, the ones that can't have one yet park
+	 * cheaply, in arrival order, on a fair {@link Semaphore} instead of all churning
+	 * through the pool's handoff queue.
+	 */
+	static final class PermitDataSource extends DelegatingDataSource implements AutoCloseable {
+
+		private final Semaphore permits;
+
+		private final long timeoutNanos;
+
+		private final @Nullable Timer waitTimer;
+
+		PermitDataSource(DataSource dataSource, int permits, Duration timeout, @Nullable MeterRegistry meterRegistry) {
+			super(dataSource);
+			this.permits = new Semaphore(permits, true);
+			this.timeoutNanos = timeout.toNanos();
+			if (meterRegistry != null) {
+				this.waitTimer = Timer.builder("customer.datasource.permit.wait").register(meterRegistry);
+				Gauge.builder("customer.datasource.permit.pending", this.permits, Semaphore::getQueueLength)
+					.register(meterRegistry);
+			}
+			else {
+				this.waitTimer = null;
+			}
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			acquire();
+			try {
+				return releaseOnClose(obtainTargetDataSource().getConnection());
+			}
+			catch (SQLException | RuntimeException e) {
+				this.permits.release();
+				throw e;
+			}
+		}
+
+		@Override
+		public Connection getConnection(String username, String password) throws SQLException {
+			acquire();
+			try {
+				return releaseOnClose(obtainTargetDataSource().getConnection(username, password));
+			}
+			catch (SQLException | RuntimeException e) {
+				this.permits.release();
+				throw e;
+			}
+		}
+
+		// lets the context shut the pool down when it closes this bean
+		@Override
+		public void close() throws Exception {
+			if (obtainTargetDataSource() instanceof AutoCloseable closeable) {
+				closeable.close();
+			}
+		}
+
+		private void acquire() throws SQLException {
+			var start = System.nanoTime();
+			try {
+				if (!this.permits.tryAcquire(this.timeoutNanos, TimeUnit.NANOSECONDS)) {
+					throw new SQLTransientConnectionException("timed out waiting for a connection");
+				}
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SQLTransientConnectionException("interrupted waiting for a connection", e);
+			}
+			finally {
+				if (this.waitTimer != null) {
+					this.waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+				}
+			}
+		}
+
+		private Connection releaseOnClose(Connection target) {
+			var closed = new AtomicBoolean();
+			return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+					new Class<?>[] { ConnectionProxy.class }, (_, method, args) -> {
+						switch (method.getName()) {
+							case "getTargetConnection" -> {
+								return target;
+							}
+							case "close" -> {
+								if (closed.compareAndSet(false, true)) {
+									try {
+										target.close();
+									}
+									finally {
+										this.permits.release();
+									}
+								}
+								return null;
+							}
+							default -> {
+								try {
+									return method.invoke(target, args);
+								}
+								catch (InvocationTargetException e) {
+									throw e.getTargetException();
+								}
+							}
+						}
+					});
+		}
+
+	}
+
+}
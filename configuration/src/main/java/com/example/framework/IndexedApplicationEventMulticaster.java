@@ -0,0 +1,201 @@
+package com.example.framework;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.NoSuchBeanDefinitionException;
+import org.springframework.beans.factory.config.ConfigurableBeanFactory;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.PayloadApplicationEvent;
+import org.springframework.context.event.SimpleApplicationEventMulticaster;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.ResolvableTypeProvider;
+import org.springframework.util.ClassUtils;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Predicate;
+
+/**
+ * Looks up the listeners for an event by its class, or the class of its payload for an
+ * event published as a plain object such as {@link UserAuthenticatedEvent}, in an index
+ * of flat, ordered listener arrays. Each array is resolved the first time its class is
+ * published, and dispatch is then a map lookup and an array walk, where Spring's own
+ * lookup allocates a cache key and a fresh listener list for every event. The index is
+ * thrown away whenever a listener is added or removed.
+ * <p>
+ * Only classes without type parameters are indexed, since the listeners for a generic
+ * event depend on more than its class; those, events published with an explicit type of
+ * a different class, and events from an unexpected source are dispatched the usual way.
+ * So is everything while a listener bean that isn't a singleton is registered, as its
+ * instance can't be kept.
+ */
+class IndexedApplicationEventMulticaster extends SimpleApplicationEventMulticaster {
+
+	private static final ApplicationListener<?>[] NOT_INDEXED = new ApplicationListener<?>[0];
+
+	// replaced rather than cleared, so a lookup racing an invalidation can't store into the
+	// new index
+	private volatile Map<Class<?>, Listeners> index = new ConcurrentHashMap<>();
+
+	private final Set<String> listenerBeanNames = ConcurrentHashMap.newKeySet();
+
+	// set by the superclass constructor, so no initializers
+	private @Nullable ConfigurableBeanFactory beanFactory;
+
+	private @Nullable ClassLoader beanClassLoader;
+
+	IndexedApplicationEventMulticaster(BeanFactory beanFactory) {
+		super(beanFactory);
+	}
+
+	@Override
+	public void setBeanFactory(BeanFactory beanFactory) {
+		super.setBeanFactory(beanFactory);
+		if (beanFactory instanceof ConfigurableBeanFactory configurableBeanFactory) {
+			this.beanFactory = configurableBeanFactory;
+			if (this.beanClassLoader == null) {
+				this.beanClassLoader = configurableBeanFactory.getBeanClassLoader();
+			}
+		}
+	}
+
+	@Override
+	public void setBeanClassLoader(ClassLoader classLoader) {
+		super.setBeanClassLoader(classLoader);
+		this.beanClassLoader = classLoader;
+	}
+
+	@Override
+	public void multicastEvent(ApplicationEvent event, @Nullable ResolvableType eventType) {
+		var listeners = listeners(event, eventType);
+		var executor = getTaskExecutor();
+		for (var listener : listeners) {
+			if (executor != null && listener.supportsAsyncExecution()) {
+				try {
+					executor.execute(() -> invokeListener(listener, event));
+				}
+				catch (RejectedExecutionException ex) {
+					invokeListener(listener, event);
+				}
+			}
+			else {
+				invokeListener(listener, event);
+			}
+		}
+	}
+
+	/**
+	 * The listeners for the event, in order, from the index if it can be.
+	 */
+	ApplicationListener<?>[] listeners(ApplicationEvent event, @Nullable ResolvableType eventType) {
+		var key = (event instanceof PayloadApplicationEvent<?> payloadEvent) ? payloadEvent.getPayload().getClass()
+				: event.getClass();
+		var expectedType = (event instanceof PayloadApplicationEvent) ? PayloadApplicationEvent.class : key;
+		if (eventType == null || eventType.getRawClass() == expectedType) {
+			var index = this.index;
+			var listeners = index.get(key);
+			if (listeners == null) {
+				listeners = resolve(event, eventType, key);
+				if (ClassUtils.isCacheSafe(key, this.beanClassLoader)
+						&& ClassUtils.isCacheSafe(listeners.sourceType(), this.beanClassLoader)) {
+					index.putIfAbsent(key, listeners);
+				}
+			}
+			if (listeners.listeners() != NOT_INDEXED && listeners.sourceType() == event.getSource().getClass()) {
+				return listeners.listeners();
+			}
+		}
+		return resolveListeners(event, eventType);
+	}
+
+	private Listeners resolve(ApplicationEvent event, @Nullable ResolvableType eventType, Class<?> key) {
+		var sourceType = event.getSource().getClass();
+		var generic = key.getTypeParameters().length > 0
+				|| (event instanceof ResolvableTypeProvider && !(event instanceof PayloadApplicationEvent));
+		if (generic || !singletonListenerBeans()) {
+			return new Listeners(sourceType, NOT_INDEXED);
+		}
+		return new Listeners(sourceType, resolveListeners(event, eventType));
+	}
+
+	private ApplicationListener<?>[] resolveListeners(ApplicationEvent event, @Nullable ResolvableType eventType) {
+		var type = (eventType != null) ? eventType : ResolvableType.forInstance(event);
+		return getApplicationListeners(event, type).toArray(new ApplicationListener<?>[0]);
+	}
+
+	private boolean singletonListenerBeans() {
+		var beanFactory = this.beanFactory;
+		if (beanFactory == null) {
+			return this.listenerBeanNames.isEmpty();
+		}
+		for (var beanName : this.listenerBeanNames) {
+			try {
+				if (!beanFactory.isSingleton(beanName)) {
+					return false;
+				}
+			}
+			catch (NoSuchBeanDefinitionException ex) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void invalidate() {
+		this.index = new ConcurrentHashMap<>();
+	}
+
+	@Override
+	public void addApplicationListener(ApplicationListener<?> listener) {
+		super.addApplicationListener(listener);
+		invalidate();
+	}
+
+	@Override
+	public void addApplicationListenerBean(String listenerBeanName) {
+		super.addApplicationListenerBean(listenerBeanName);
+		this.listenerBeanNames.add(listenerBeanName);
+		invalidate();
+	}
+
+	@Override
+	public void removeApplicationListener(ApplicationListener<?> listener) {
+		super.removeApplicationListener(listener);
+		invalidate();
+	}
+
+	@Override
+	public void removeApplicationListenerBean(String listenerBeanName) {
+		super.removeApplicationListenerBean(listenerBeanName);
+		this.listenerBeanNames.remove(listenerBeanName);
+		invalidate();
+	}
+
+	@Override
+	public void removeApplicationListeners(Predicate<ApplicationListener<?>> predicate) {
+		super.removeApplicationListeners(predicate);
+		invalidate();
+	}
+
+	@Override
+	public void removeApplicationListenerBeans(Predicate<String> predicate) {
+		super.removeApplicationListenerBeans(predicate);
+		this.listenerBeanNames.removeIf(predicate);
+		invalidate();
+	}
+
+	@Override
+	public void removeAllListeners() {
+		super.removeAllListeners();
+		this.listenerBeanNames.clear();
+		invalidate();
+	}
+
+	// the listeners for one class of event, from one class of source
+	private record Listeners(Class<?> sourceType, ApplicationListener<?>[] listeners) {
+	}
+
+}
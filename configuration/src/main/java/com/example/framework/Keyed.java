@@ -0,0 +1,12 @@
+package com.example.framework;
+
+/**
+ * An event whose listeners must see it in order with the other events of the same key.
+ * The {@link AsyncApplicationEventMulticaster} queues the events of one key for a
+ * listener in the same partition.
+ */
+interface Keyed {
+
+	Object orderingKey();
+
+}
@@ -0,0 +1,123 @@
+package com.example.framework;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.support.SqlArrayValue;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.Assert;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Events written to the {@code outbox} table in the transaction of the change they
+ * describe, so they're committed, or lost, with it. The {@link OutboxDrainer} publishes
+ * them afterwards.
+ * <p>
+ * Events are stored as JSON under the simple name of their class, and only the event
+ * types the outbox is given can be written or read back, so a row can't name an
+ * arbitrary class to instantiate. The table is expected to exist:
+ *
+ * <pre>
+ * create table outbox (
+ *     id bigserial primary key,
+ *     type text not null,
+ *     payload jsonb not null,
+ *     created timestamptz not null default now()
+ * );
+ * </pre>
+ */
+class Outbox {
+
+	private static final String INSERT_SQL = "insert into outbox (type, payload) select type, payload::jsonb "
+			+ "from unnest(?::text[], ?::text[]) as event (type, payload)";
+
+	// other drainers skip the rows this one has locked instead of waiting for them
+	private static final String CLAIM_SQL = "select id, type, payload::text as payload, created from outbox "
+			+ "order by id limit ? for update skip locked";
+
+	private static final String DELETE_SQL = "delete from outbox where id = any(?)";
+
+	// through the primary key index rather than a scan for min(created)
+	private static final String OLDEST_SQL = "select created from outbox order by id limit 1";
+
+	private final JdbcClient db;
+
+	private final JsonMapper jsonMapper;
+
+	private final Map<String, Class<?>> eventTypes = new HashMap<>();
+
+	Outbox(JdbcClient jdbcClient, JsonMapper jsonMapper, Collection<Class<?>> eventTypes) {
+		this.db = jdbcClient;
+		this.jsonMapper = jsonMapper;
+		for (var eventType : eventTypes) {
+			var previous = this.eventTypes.put(eventType.getSimpleName(), eventType);
+			Assert.isTrue(previous == null, () -> "more than one event type is called " + eventType.getSimpleName());
+		}
+	}
+
+	// one insert for all of them, the types and payloads as two array parameters
+	void appendAll(Collection<?> events) {
+		Assert.state(TransactionSynchronizationManager.isActualTransactionActive(),
+				"events can only be appended in a transaction");
+		if (events.isEmpty()) {
+			return;
+		}
+		var types = new String[events.size()];
+		var payloads = new String[events.size()];
+		var i = 0;
+		for (var event : events) {
+			var type = event.getClass().getSimpleName();
+			Assert.isTrue(this.eventTypes.get(type) == event.getClass(), () -> "unknown event type " + type);
+			types[i] = type;
+			payloads[i++] = this.jsonMapper.writeValueAsString(event);
+		}
+		this.db.sql(INSERT_SQL).params(new SqlArrayValue("text", (Object[]) types),
+				new SqlArrayValue("text", (Object[]) payloads)).update();
+	}
+
+	/**
+	 * Locks and reads up to {@code limit} of the oldest events no other transaction has
+	 * locked. They stay locked until the current transaction ends.
+	 */
+	List<Entry> claim(int limit) {
+		return this.db.sql(CLAIM_SQL)
+			.param(limit)
+			.query((rs, _) -> new Entry(rs.getLong("id"), read(rs.getString("type"), rs.getString("payload")),
+					rs.getTimestamp("created").toInstant()))
+			.list();
+	}
+
+	/**
+	 * When the oldest event still in the outbox was written, claimed or not, or
+	 * {@code null} if the outbox is empty.
+	 */
+	@Nullable Instant oldest() {
+		return this.db.sql(OLDEST_SQL)
+			.query((rs, _) -> rs.getTimestamp("created").toInstant())
+			.optional()
+			.orElse(null);
+	}
+
+	void delete(List<Entry> entries) {
+		var ids = new Long[entries.size()];
+		for (var i = 0; i < ids.length; i++) {
+			ids[i] = entries.get(i).id();
+		}
+		this.db.sql(DELETE_SQL).params(new SqlArrayValue("int8", (Object[]) ids)).update();
+	}
+
+	private Object read(String type, String payload) {
+		var eventType = this.eventTypes.get(type);
+		Assert.state(eventType != null, () -> "unknown event type " + type);
+		return this.jsonMapper.readValue(payload, eventType);
+	}
+
+	record Entry(long id, Object event, Instant created) {
+	}
+
+}
@@ -0,0 +1,65 @@
+package com.example.framework;
+
+import org.jspecify.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Writes a {@link CustomerSavedEvent} to the {@link Outbox} for every customer
+ * {@link #saveAll(Collection)} saves. It has to sit inside
+ * {@link Transactions#transactional}, so the events are committed or rolled back with the
+ * customers.
+ */
+class OutboxCustomerRepository implements CustomerRepository {
+
+	private final CustomerRepository repository;
+
+	private final Outbox outbox;
+
+	OutboxCustomerRepository(CustomerRepository repository, Outbox outbox) {
+		this.repository = repository;
+		this.outbox = outbox;
+	}
+
+	@Override
+	public Collection<Customer> saveAll(Collection<Customer> customers) {
+		var saved = this.repository.saveAll(customers);
+		var events = new ArrayList<CustomerSavedEvent>(saved.size());
+		for (var customer : saved) {
+			events.add(new CustomerSavedEvent(customer.id(), customer.name()));
+		}
+		this.outbox.appendAll(events);
+		return saved;
+	}
+
+	@Override
+	public Collection<Customer> findAll() {
+		return this.repository.findAll();
+	}
+
+	@Override
+	public void scanAll(Consumer<Customer> consumer) {
+		this.repository.scanAll(consumer);
+	}
+
+	@Override
+	public CustomerPage findPage(@Nullable Integer afterId, int limit) {
+		return this.repository.findPage(afterId, limit);
+	}
+
+	// COPY doesn't hand back the generated ids, so there's nothing to describe the new
+	// customers with
+	@Override
+	public BulkLoadResult bulkLoad(Stream<Customer> customers) {
+		return this.repository.bulkLoad(customers);
+	}
+
+	@Override
+	public Collection<Customer> findById(Iterable<Integer> ids) {
+		return this.repository.findById(ids);
+	}
+
+}
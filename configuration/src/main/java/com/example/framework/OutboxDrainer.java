@@ -0,0 +1,213 @@
+package com.example.framework;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jspecify.annotations.Nullable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Publishes the events in the {@link Outbox} through the
+ * {@link ApplicationEventPublisher}, then deletes them.
+ * <p>
+ * Each of {@code concurrency} virtual threads claims a batch of up to {@code batchSize}
+ * events in a transaction, publishes them in order and deletes them before it commits.
+ * Claiming skips the rows another transaction holds, so drainers on this and other
+ * instances work through the outbox side by side without waiting on each other; events
+ * are published in order within a batch, not across batches. A full batch is followed
+ * straight away by the next one, otherwise the thread waits {@code pollInterval}.
+ * <p>
+ * The publisher must have delivered an event to the listeners when {@code publishEvent}
+ * returns, see {@link AsyncApplicationEventMulticaster#inline(Runnable)}. If a listener
+ * throws, the batch rolls back and is claimed again later, so every event is published
+ * at least once and listeners should cope with seeing one twice. The time from an event
+ * being written to it being published is recorded as {@code customer.outbox.lag}, the
+ * events published as {@code customer.outbox.published} and the size of each batch as
+ * {@code customer.outbox.batch}. As those only count the batches that commit, the age of
+ * the oldest event still in the outbox, looked up after every batch, failed or not, is
+ * {@code customer.outbox.oldest.age}.
+ */
+class OutboxDrainer implements SmartLifecycle {
+
+	private static final Log logger = LogFactory.getLog(OutboxDrainer.class);
+
+	private final Outbox outbox;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final ApplicationEventPublisher publisher;
+
+	private final int batchSize;
+
+	private final long pollIntervalNanos;
+
+	private final int concurrency;
+
+	private final @Nullable Timer lag;
+
+	private final @Nullable Counter published;
+
+	private final @Nullable DistributionSummary batches;
+
+	private final List<Thread> threads = new ArrayList<>();
+
+	// when the oldest event in the outbox was written, in epoch millis, or 0 if it's empty
+	private final AtomicLong oldest = new AtomicLong();
+
+	private volatile boolean running;
+
+	private boolean autoStartup = true;
+
+	OutboxDrainer(Outbox outbox, TransactionTemplate transactionTemplate, ApplicationEventPublisher publisher,
+			int batchSize, Duration pollInterval, int concurrency, @Nullable MeterRegistry meterRegistry) {
+		Assert.isTrue(batchSize > 0, "the batch size must be greater than zero");
+		Assert.isTrue(pollInterval.isPositive(), "the poll interval must be positive");
+		Assert.isTrue(concurrency > 0, "the concurrency must be greater than zero");
+		this.outbox = outbox;
+		this.transactionTemplate = transactionTemplate;
+		this.publisher = publisher;
+		this.batchSize = batchSize;
+		this.pollIntervalNanos = pollInterval.toNanos();
+		this.concurrency = concurrency;
+		if (meterRegistry != null) {
+			this.lag = Timer.builder("customer.outbox.lag").publishPercentiles(0.5, 0.99).register(meterRegistry);
+			this.published = Counter.builder("customer.outbox.published").register(meterRegistry);
+			this.batches = DistributionSummary.builder("customer.outbox.batch")
+				.baseUnit("events")
+				.register(meterRegistry);
+			Gauge.builder("customer.outbox.oldest.age", this, OutboxDrainer::oldestAgeSeconds)
+				.baseUnit("seconds")
+				.register(meterRegistry);
+		}
+		else {
+			this.lag = null;
+			this.published = null;
+			this.batches = null;
+		}
+	}
+
+	void setAutoStartup(boolean autoStartup) {
+		this.autoStartup = autoStartup;
+	}
+
+	/**
+	 * Claims, publishes and deletes one batch, and returns how many events were in it.
+	 */
+	int drain() {
+		var created = new ArrayList<Instant>();
+		var drained = this.transactionTemplate.execute(_ -> {
+			created.clear();
+			var entries = this.outbox.claim(this.batchSize);
+			if (entries.isEmpty()) {
+				return 0;
+			}
+			for (var entry : entries) {
+				this.publisher.publishEvent(entry.event());
+				created.add(entry.created());
+			}
+			this.outbox.delete(entries);
+			return entries.size();
+		});
+		if (drained == null || drained == 0) {
+			return 0;
+		}
+		// only once the batch is committed, as a rolled back one will be published again
+		if (this.lag != null && this.published != null && this.batches != null) {
+			var now = Instant.now();
+			for (var instant : created) {
+				this.lag.record(Duration.between(instant, now));
+			}
+			this.published.increment(drained);
+			this.batches.record(drained);
+		}
+		return drained;
+	}
+
+	/**
+	 * Looks up when the oldest event in the outbox was written, for the
+	 * {@code customer.outbox.oldest.age} gauge.
+	 */
+	void refreshOldest() {
+		var created = this.outbox.oldest();
+		this.oldest.set(created != null ? created.toEpochMilli() : 0);
+	}
+
+	private double oldestAgeSeconds() {
+		var created = this.oldest.get();
+		return created != 0 ? Math.max(0, System.currentTimeMillis() - created) / 1000.0 : 0;
+	}
+
+	@Override
+	public void start() {
+		if (this.running) {
+			return;
+		}
+		this.running = true;
+		for (var i = 0; i < this.concurrency; i++) {
+			this.threads.add(Thread.ofVirtual().name("outbox-drainer-" + i).start(this::run));
+		}
+	}
+
+	// lets the batches in flight finish
+	@Override
+	public void stop() {
+		this.running = false;
+		for (var thread : this.threads) {
+			LockSupport.unpark(thread);
+			try {
+				thread.join();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+		this.threads.clear();
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return this.autoStartup;
+	}
+
+	private void run() {
+		while (this.running) {
+			var drained = 0;
+			try {
+				drained = drain();
+			}
+			catch (RuntimeException ex) {
+				logger.warn("draining the outbox failed, the batch will be retried", ex);
+			}
+			try {
+				refreshOldest();
+			}
+			catch (RuntimeException ex) {
+				logger.debug("looking up the oldest outbox event failed", ex);
+			}
+			if (drained < this.batchSize && this.running) {
+				LockSupport.parkNanos(this, this.pollIntervalNanos);
+			}
+		}
+	}
+
+}
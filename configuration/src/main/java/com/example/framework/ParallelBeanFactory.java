@@ -0,0 +1,375 @@
+package com.example.framework;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jspecify.annotations.Nullable;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.FatalBeanException;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.ObjectFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
+import org.springframework.util.ReflectionUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Creates the eager singletons concurrently, each as soon as the singletons it depends on
+ * exist, rather than one after another, so beans that don't depend on each other don't
+ * add up their construction and init callbacks.
+ * <p>
+ * The dependencies are worked out from the bean definitions before any singleton is
+ * created: {@code depends-on}, the factory bean, the parameters of the constructors or
+ * the factory method, and the {@code @Autowired} fields and methods, each matched to the
+ * beans of its type, or of its element type for collections, maps, {@code Optional}s and
+ * {@code ObjectProvider}s. That errs on the side of too many, as qualifiers aren't looked
+ * at; a dependency it misses, for instance of a bean with an instance supplier, is
+ * created on demand as usual, and a thread that needs a bean another thread is creating
+ * waits for it. Beans that depend on each other, directly or not, are created one after
+ * another on one thread, and logged, and the {@code @Bean} methods of a
+ * {@code @Configuration} class with proxied bean methods are called in turn, as they may
+ * call each other. Each bean goes through {@code getBean}, so its {@code depends-on}
+ * beans, post-processors and init callbacks are handled the usual way, and the
+ * {@code SmartInitializingSingleton}s are called once every singleton exists.
+ * <p>
+ * The threads are virtual unless {@code parallelism} bounds them. If the singletons
+ * aren't all created within {@code timeout}, refresh fails with the beans still being
+ * created and where their threads are stuck.
+ */
+class ParallelBeanFactory extends DefaultListableBeanFactory {
+
+	private static final Log logger = LogFactory.getLog(ParallelBeanFactory.class);
+
+	private static final int STACK_DEPTH = 12;
+
+	private final int parallelism;
+
+	private final Duration timeout;
+
+	private final ThreadLocal<Boolean> bootstrapThread = ThreadLocal.withInitial(() -> false);
+
+	private final Map<String, Thread> inCreation = new ConcurrentHashMap<>();
+
+	/**
+	 * @param parallelism the number of platform threads to create the singletons on, or 0
+	 * for a virtual thread each
+	 */
+	ParallelBeanFactory(int parallelism, Duration timeout) {
+		Assert.isTrue(parallelism >= 0, "the parallelism must not be negative");
+		Assert.isTrue(timeout.isPositive(), "the timeout must be positive");
+		this.parallelism = parallelism;
+		this.timeout = timeout;
+	}
+
+	@Override
+	public void preInstantiateSingletons() throws BeansException {
+		var candidates = candidates();
+		var graph = new LinkedHashMap<String, Set<String>>();
+		var previousBeanMethods = new HashMap<String, String>();
+		for (var beanName : candidates) {
+			var dependencies = dependencies(beanName, candidates);
+			// the @Bean methods of a proxied @Configuration class can call each other through
+			// the proxy, which can't be seen here and isn't safe to do concurrently, so they're
+			// called in turn
+			var factoryBeanName = getMergedLocalBeanDefinition(beanName).getFactoryBeanName();
+			if (factoryBeanName != null && proxied(factoryBeanName)) {
+				var previous = previousBeanMethods.put(factoryBeanName, beanName);
+				if (previous != null) {
+					dependencies.add(previous);
+				}
+			}
+			graph.put(beanName, dependencies);
+		}
+		if (!graph.isEmpty()) {
+			instantiate(graph);
+		}
+		// the factory beans, and the SmartInitializingSingleton callbacks
+		super.preInstantiateSingletons();
+	}
+
+	// like Spring's own background threads, wait for a bean another thread is creating
+	// rather than for the lock every singleton is otherwise created under
+	@Override
+	protected @Nullable Boolean isCurrentThreadAllowedToHoldSingletonLock() {
+		return this.bootstrapThread.get() ? Boolean.FALSE : super.isCurrentThreadAllowedToHoldSingletonLock();
+	}
+
+	private Set<String> candidates() {
+		var candidates = new LinkedHashSet<String>();
+		for (var beanName : getBeanDefinitionNames()) {
+			var definition = getMergedLocalBeanDefinition(beanName);
+			if (!definition.isAbstract() && definition.isSingleton() && !definition.isLazyInit()
+					&& !containsSingleton(beanName) && !isFactoryBean(beanName)) {
+				candidates.add(beanName);
+			}
+		}
+		return candidates;
+	}
+
+	private boolean proxied(String beanName) {
+		var type = getType(beanName, false);
+		return type != null && type != ClassUtils.getUserClass(type);
+	}
+
+	// the candidates the bean needs before it can be created
+	private Set<String> dependencies(String beanName, Set<String> candidates) {
+		var definition = getMergedLocalBeanDefinition(beanName);
+		var dependencies = new LinkedHashSet<String>();
+		if (definition.getDependsOn() != null) {
+			for (var dependsOn : definition.getDependsOn()) {
+				dependencies.add(canonicalName(dependsOn));
+			}
+		}
+		if (definition.getFactoryBeanName() != null) {
+			dependencies.add(definition.getFactoryBeanName());
+		}
+		for (var injectionPoint : injectionPoints(beanName, definition)) {
+			var type = dependencyType(injectionPoint);
+			var resolved = type.resolve();
+			if (resolved != null && resolved != Object.class) {
+				Collections.addAll(dependencies, getBeanNamesForType(type, true, false));
+			}
+		}
+		dependencies.remove(beanName);
+		dependencies.retainAll(candidates);
+		return dependencies;
+	}
+
+	private List<ResolvableType> injectionPoints(String beanName, RootBeanDefinition definition) {
+		var injectionPoints = new ArrayList<ResolvableType>();
+		if (definition.getInstanceSupplier() != null) {
+			// the supplier looks up what it needs
+			return injectionPoints;
+		}
+		if (definition.getFactoryMethodName() != null) {
+			var factoryClass = (definition.getFactoryBeanName() != null)
+					? getType(definition.getFactoryBeanName(), false) : resolveBeanClass(definition, beanName);
+			if (factoryClass != null) {
+				for (var method : ReflectionUtils.getUniqueDeclaredMethods(ClassUtils.getUserClass(factoryClass))) {
+					if (method.getName().equals(definition.getFactoryMethodName())) {
+						for (var i = 0; i < method.getParameterCount(); i++) {
+							injectionPoints.add(ResolvableType.forMethodParameter(method, i));
+						}
+					}
+				}
+			}
+			return injectionPoints;
+		}
+		var beanClass = resolveBeanClass(definition, beanName);
+		if (beanClass == null) {
+			return injectionPoints;
+		}
+		for (var constructor : beanClass.getDeclaredConstructors()) {
+			for (var i = 0; i < constructor.getParameterCount(); i++) {
+				injectionPoints.add(ResolvableType.forConstructorParameter(constructor, i));
+			}
+		}
+		ReflectionUtils.doWithFields(beanClass, field -> injectionPoints.add(ResolvableType.forField(field)),
+				field -> AnnotatedElementUtils.hasAnnotation(field, Autowired.class));
+		ReflectionUtils.doWithMethods(beanClass, method -> {
+			for (var i = 0; i < method.getParameterCount(); i++) {
+				injectionPoints.add(ResolvableType.forMethodParameter(method, i));
+			}
+		}, method -> AnnotatedElementUtils.hasAnnotation(method, Autowired.class));
+		return injectionPoints;
+	}
+
+	// the type of the beans an injection point takes
+	private static ResolvableType dependencyType(ResolvableType type) {
+		if (type.isArray()) {
+			return dependencyType(type.getComponentType());
+		}
+		var rawClass = type.toClass();
+		if (Collection.class.isAssignableFrom(rawClass) || ObjectFactory.class.isAssignableFrom(rawClass)
+				|| rawClass == Optional.class) {
+			return dependencyType(type.getGeneric(0));
+		}
+		if (Map.class.isAssignableFrom(rawClass)) {
+			return dependencyType(type.getGeneric(1));
+		}
+		return type;
+	}
+
+	private void instantiate(Map<String, Set<String>> graph) {
+		var executor = (this.parallelism > 0)
+				? Executors.newFixedThreadPool(this.parallelism, Thread.ofPlatform().name("bootstrap-", 0).factory())
+				: Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bootstrap-", 0).factory());
+		var created = new HashMap<String, CompletableFuture<Void>>();
+		var all = new ArrayList<CompletableFuture<Void>>();
+		// the beans that depend on each other, directly or not, together, and after the
+		// beans they depend on
+		for (var unit : new Tarjan(graph).components()) {
+			if (unit.size() > 1) {
+				logger.info("creating " + unit + " on one thread, as they depend on each other");
+			}
+			var dependencies = new LinkedHashSet<CompletableFuture<Void>>();
+			for (var beanName : unit) {
+				for (var dependency : graph.get(beanName)) {
+					if (!unit.contains(dependency)) {
+						dependencies.add(created.get(dependency));
+					}
+				}
+			}
+			var future = CompletableFuture.allOf(dependencies.toArray(CompletableFuture[]::new))
+				.thenRunAsync(() -> create(unit), executor);
+			unit.forEach(beanName -> created.put(beanName, future));
+			all.add(future);
+		}
+		await(CompletableFuture.allOf(all.toArray(CompletableFuture[]::new)), executor);
+	}
+
+	private void create(List<String> unit) {
+		this.bootstrapThread.set(true);
+		try {
+			for (var beanName : unit) {
+				this.inCreation.put(beanName, Thread.currentThread());
+				try {
+					getBean(beanName);
+				}
+				finally {
+					this.inCreation.remove(beanName);
+				}
+			}
+		}
+		finally {
+			this.bootstrapThread.remove();
+		}
+	}
+
+	private void await(CompletableFuture<Void> all, ExecutorService executor) {
+		try {
+			all.get(this.timeout.toNanos(), TimeUnit.NANOSECONDS);
+			executor.close();
+		}
+		catch (TimeoutException ex) {
+			var stuck = stuck();
+			executor.shutdownNow();
+			throw stuck;
+		}
+		catch (ExecutionException ex) {
+			// every bean has been created or has failed by now
+			executor.close();
+			var cause = ex.getCause();
+			while (cause instanceof CompletionException && cause.getCause() != null) {
+				cause = cause.getCause();
+			}
+			if (cause instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			if (cause instanceof Error error) {
+				throw error;
+			}
+			throw new FatalBeanException("creating the singletons failed", cause);
+		}
+		catch (InterruptedException ex) {
+			executor.shutdownNow();
+			Thread.currentThread().interrupt();
+			throw new FatalBeanException("interrupted while creating the singletons", ex);
+		}
+	}
+
+	private BeanCreationException stuck() {
+		var message = new StringBuilder("the singletons weren't all created within " + this.timeout
+				+ ", as these are waiting for each other or for something else:");
+		String first = null;
+		for (var entry : this.inCreation.entrySet()) {
+			first = (first != null) ? first : entry.getKey();
+			message.append("\n\t").append(entry.getKey()).append(" on ").append(entry.getValue());
+			var stackTrace = entry.getValue().getStackTrace();
+			for (var i = 0; i < Math.min(STACK_DEPTH, stackTrace.length); i++) {
+				message.append("\n\t\tat ").append(stackTrace[i]);
+			}
+		}
+		return (first != null) ? new BeanCreationException(first, message.toString())
+				: new BeanCreationException(message.toString());
+	}
+
+	// Tarjan's strongly connected components, which come out after the ones they depend on
+	private static final class Tarjan {
+
+		private final Map<String, Set<String>> graph;
+
+		private final Map<String, Integer> order = new HashMap<>();
+
+		private final Map<String, Integer> index = new HashMap<>();
+
+		private final Map<String, Integer> lowLink = new HashMap<>();
+
+		private final List<String> stack = new ArrayList<>();
+
+		private final Set<String> onStack = new LinkedHashSet<>();
+
+		private final List<List<String>> components = new ArrayList<>();
+
+		Tarjan(Map<String, Set<String>> graph) {
+			this.graph = graph;
+			for (var node : graph.keySet()) {
+				this.order.put(node, this.order.size());
+			}
+		}
+
+		List<List<String>> components() {
+			for (var node : this.graph.keySet()) {
+				if (!this.index.containsKey(node)) {
+					connect(node);
+				}
+			}
+			return this.components;
+		}
+
+		private void connect(String node) {
+			this.index.put(node, this.index.size());
+			this.lowLink.put(node, this.index.get(node));
+			this.stack.add(node);
+			this.onStack.add(node);
+			for (var dependency : this.graph.get(node)) {
+				if (!this.index.containsKey(dependency)) {
+					connect(dependency);
+					this.lowLink.put(node, Math.min(this.lowLink.get(node), this.lowLink.get(dependency)));
+				}
+				else if (this.onStack.contains(dependency)) {
+					this.lowLink.put(node, Math.min(this.lowLink.get(node), this.index.get(dependency)));
+				}
+			}
+			if (this.lowLink.get(node).equals(this.index.get(node))) {
+				var component = new ArrayList<String>();
+				String member;
+				do {
+					member = this.stack.removeLast();
+					this.onStack.remove(member);
+					component.add(member);
+				}
+				while (!member.equals(node));
+				// in the order they were registered in
+				component.sort(Comparator.comparing(this.order::get));
+				this.components.add(component);
+			}
+		}
+
+	}
+
+}
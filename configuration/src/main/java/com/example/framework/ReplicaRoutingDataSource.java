@@ -0,0 +1,141 @@
+package com.example.framework;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import org.jspecify.annotations.Nullable;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The read-only side of the read/write split set up by
+ * {@link DataSources#readWriteSplitting}: hands out connections from one of the replicas,
+ * picked round-robin or by fewest active connections, and falls back to the primary when
+ * no replica can give one. A replica that fails to connect is skipped until
+ * {@code retryAfter} has passed.
+ */
+class ReplicaRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+
+	enum Selection {
+
+		ROUND_ROBIN, LEAST_LOADED
+
+	}
+
+	private final DataSource primary;
+
+	private final List<Replica> replicas;
+
+	private final Selection selection;
+
+	private final long retryAfterNanos;
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, Selection selection,
+			Duration retryAfter) {
+		Assert.notEmpty(replicas, "there must be at least one replica");
+		this.primary = primary;
+		this.replicas = replicas.stream().map(Replica::new).toList();
+		this.selection = selection;
+		this.retryAfterNanos = retryAfter.toNanos();
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return connection(DataSource::getConnection);
+	}
+
+	@Override
+	public Connection getConnection(String username, String password) throws SQLException {
+		return connection(dataSource -> dataSource.getConnection(username, password));
+	}
+
+	@Override
+	public void close() throws Exception {
+		for (var replica : this.replicas) {
+			if (replica.dataSource instanceof AutoCloseable closeable) {
+				closeable.close();
+			}
+		}
+	}
+
+	private Connection connection(ConnectionCallback callback) throws SQLException {
+		var now = System.nanoTime();
+		for (var replica : candidates(now)) {
+			try {
+				return callback.connect(replica.dataSource);
+			}
+			catch (SQLException _) {
+				replica.downUntil = now + this.retryAfterNanos;
+			}
+		}
+		return callback.connect(this.primary);
+	}
+
+	// the replicas that are up, in the order they should be tried
+	private List<Replica> candidates(long now) {
+		var size = this.replicas.size();
+		var candidates = new ArrayList<Replica>(size);
+		var start = Math.floorMod(this.next.getAndIncrement(), size);
+		for (var i = 0; i < size; i++) {
+			var replica = this.replicas.get((start + i) % size);
+			if (replica.isUp(now)) {
+				candidates.add(replica);
+			}
+		}
+		if (this.selection == Selection.LEAST_LOADED) {
+			candidates.sort(Comparator.comparingInt(Replica::activeConnections));
+		}
+		return candidates;
+	}
+
+	private interface ConnectionCallback {
+
+		Connection connect(DataSource dataSource) throws SQLException;
+
+	}
+
+	private static final class Replica {
+
+		private final DataSource dataSource;
+
+		private final @Nullable HikariPoolMXBean pool;
+
+		private volatile long downUntil;
+
+		Replica(DataSource dataSource) {
+			this.dataSource = dataSource;
+			this.pool = pool(dataSource);
+		}
+
+		boolean isUp(long now) {
+			return this.downUntil == 0 || now - this.downUntil >= 0;
+		}
+
+		// without a pool to ask there's nothing to compare, and the order stays round-robin
+		int activeConnections() {
+			return this.pool == null ? 0 : this.pool.getActiveConnections();
+		}
+
+		private static @Nullable HikariPoolMXBean pool(DataSource dataSource) {
+			try {
+				return dataSource.isWrapperFor(HikariDataSource.class)
+						? dataSource.unwrap(HikariDataSource.class).getHikariPoolMXBean() : null;
+			}
+			catch (SQLException _) {
+				return null;
+			}
+		}
+
+	}
+
+}
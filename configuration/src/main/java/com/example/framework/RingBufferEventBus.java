@@ -0,0 +1,382 @@
+package com.example.framework;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jspecify.annotations.Nullable;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.BeanFactoryAware;
+import org.springframework.beans.factory.ListableBeanFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.util.Assert;
+import org.springframework.util.ReflectionUtils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bus for one high-rate event type, such as {@link UserAuthenticatedEvent}, built on a
+ * ring of preallocated slots in the style of the LMAX Disruptor. Publishing claims the
+ * next slot with a single atomic increment, stores the event and marks the slot
+ * published; there's no lock, no listener lookup and, beyond the event itself, no
+ * allocation. Every subscriber has its own thread that works through the ring in order,
+ * taking everything published since its last pass as one batch, and tells the listener
+ * which event ends the batch so it can flush once per batch rather than once per event.
+ * <p>
+ * When the ring is full a publisher waits for the slowest subscriber, so the ring size
+ * bounds how far a subscriber can fall behind. Once every subscriber has passed a slot,
+ * one of them clears it, so the ring doesn't keep delivered events reachable. A
+ * subscriber with nothing to do spins briefly, then parks until the next publish. How
+ * far behind each subscriber is, is recorded as {@code customer.events.ring.backlog}.
+ * <p>
+ * Once the bus is stopped, {@link #publish} takes no more events and returns
+ * {@code false}, so the caller can deliver the event some other way; every event it did
+ * take is delivered before the subscribers finish.
+ * <p>
+ * When the context starts, every {@code @EventListener} method that takes the bus's event
+ * type is subscribed, so a consumer like {@link EventConsumer} doesn't change. Those
+ * methods still see the events published through the context; the bus only delivers the
+ * events published to it. The {@code condition} of an {@code @EventListener} isn't
+ * evaluated here.
+ */
+class RingBufferEventBus<E> implements BeanFactoryAware, SmartInitializingSingleton, SmartLifecycle {
+
+	/**
+	 * Receives the events of the bus, in the order they were published, on the
+	 * subscriber's thread.
+	 */
+	interface BatchListener<E> {
+
+		void onEvent(E event, boolean endOfBatch) throws Exception;
+
+	}
+
+	private static final Log logger = LogFactory.getLog(RingBufferEventBus.class);
+
+	private static final VarHandle PUBLISHED = MethodHandles.arrayElementVarHandle(int[].class);
+
+	private static final int SPINS = 100;
+
+	private final Class<E> eventType;
+
+	private final Object[] entries;
+
+	// the lap of the ring each slot was last published in
+	private final int[] published;
+
+	private final int mask;
+
+	private final int lapShift;
+
+	// the next sequence to hand out; sequences start at 0
+	private final AtomicLong claimed = new AtomicLong();
+
+	private final List<Subscriber> subscribers = new ArrayList<>();
+
+	private final @Nullable MeterRegistry meterRegistry;
+
+	private @Nullable ListableBeanFactory beanFactory;
+
+	// the last sequence whose slot has been cleared, and so may be claimed again a lap
+	// later
+	private final AtomicLong cleared = new AtomicLong(-1);
+
+	// the subscriber clearing slots, if any
+	private final AtomicBoolean clearing = new AtomicBoolean();
+
+	// publishers past the stopped check, which the subscribers wait for before finishing
+	private final AtomicInteger publishing = new AtomicInteger();
+
+	// the cleared sequence as last seen by a publisher, so they don't all look every time
+	private volatile long clearedCache = -1;
+
+	private volatile boolean running;
+
+	private volatile boolean stopped;
+
+	private boolean autoStartup = true;
+
+	RingBufferEventBus(Class<E> eventType, int bufferSize, @Nullable MeterRegistry meterRegistry) {
+		Assert.isTrue(bufferSize > 0 && Integer.bitCount(bufferSize) == 1, "the buffer size must be a power of two");
+		this.eventType = eventType;
+		this.entries = new Object[bufferSize];
+		this.published = new int[bufferSize];
+		Arrays.fill(this.published, -1);
+		this.mask = bufferSize - 1;
+		this.lapShift = Integer.numberOfTrailingZeros(bufferSize);
+		this.meterRegistry = meterRegistry;
+	}
+
+	@Override
+	public void setBeanFactory(BeanFactory beanFactory) {
+		if (beanFactory instanceof ListableBeanFactory listableBeanFactory) {
+			this.beanFactory = listableBeanFactory;
+		}
+	}
+
+	void setAutoStartup(boolean autoStartup) {
+		this.autoStartup = autoStartup;
+	}
+
+	/**
+	 * Adds a listener, which sees the events published from now on. Listeners can only
+	 * be added before the bus is started.
+	 */
+	void subscribe(String name, BatchListener<? super E> listener) {
+		Assert.state(!this.running && !this.stopped, "listeners must subscribe before the bus is started");
+		var subscriber = new Subscriber(name, listener, this.claimed.get() - 1);
+		this.subscribers.add(subscriber);
+		if (this.meterRegistry != null) {
+			Gauge.builder("customer.events.ring.backlog", subscriber, Subscriber::backlog)
+				.tag("listener", name)
+				.register(this.meterRegistry);
+		}
+	}
+
+	/**
+	 * Publishes the event to the subscribers, or returns {@code false} if the bus is
+	 * stopped and won't deliver it.
+	 */
+	boolean publish(E event) {
+		// announced before checking, so a stopping subscriber either waits for this
+		// publish or this publish sees the bus stopped
+		this.publishing.incrementAndGet();
+		try {
+			if (this.stopped) {
+				return false;
+			}
+			if (this.subscribers.isEmpty()) {
+				return true;
+			}
+			var sequence = this.claimed.getAndIncrement();
+			var wrapPoint = sequence - this.entries.length;
+			if (wrapPoint > this.clearedCache) {
+				awaitCapacity(wrapPoint);
+			}
+			this.entries[(int) sequence & this.mask] = event;
+			// a volatile store, so a subscriber that is about to park either sees the event
+			// or has already said it is parking
+			PUBLISHED.setVolatile(this.published, (int) sequence & this.mask, (int) (sequence >>> this.lapShift));
+		}
+		finally {
+			this.publishing.decrementAndGet();
+		}
+		for (var subscriber : this.subscribers) {
+			if (subscriber.parked) {
+				LockSupport.unpark(subscriber.thread);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void afterSingletonsInstantiated() {
+		var beanFactory = this.beanFactory;
+		if (beanFactory == null) {
+			return;
+		}
+		for (var beanName : beanFactory.getBeanNamesForType(Object.class, false, false)) {
+			var beanType = beanFactory.getType(beanName, false);
+			if (beanType == null) {
+				continue;
+			}
+			var methods = MethodIntrospector.selectMethods(beanType,
+					(MethodIntrospector.MetadataLookup<EventListener>) method -> AnnotatedElementUtils
+						.findMergedAnnotation(method, EventListener.class));
+			for (var method : methods.keySet()) {
+				if (method.getParameterCount() == 1 && method.getParameterTypes()[0].isAssignableFrom(this.eventType)) {
+					var bean = beanFactory.getBean(beanName);
+					subscribe(beanName + "." + method.getName(), eventListener(bean, method));
+				}
+			}
+		}
+	}
+
+	private static <E> BatchListener<E> eventListener(Object bean, Method method) {
+		var invocable = AopUtils.selectInvocableMethod(method, bean.getClass());
+		ReflectionUtils.makeAccessible(invocable);
+		return (event, _) -> ReflectionUtils.invokeMethod(invocable, bean, event);
+	}
+
+	@Override
+	public void start() {
+		Assert.state(!this.stopped, "the event bus can't be restarted");
+		if (this.running) {
+			return;
+		}
+		this.running = true;
+		for (var subscriber : this.subscribers) {
+			subscriber.thread = Thread.ofPlatform()
+				.daemon()
+				.name("event-bus-" + subscriber.name)
+				.start(subscriber::run);
+		}
+	}
+
+	// stops taking events and waits for the subscribers to finish the ones already
+	// published
+	@Override
+	public void stop() {
+		this.stopped = true;
+		this.running = false;
+		for (var subscriber : this.subscribers) {
+			var thread = subscriber.thread;
+			if (thread != null) {
+				LockSupport.unpark(thread);
+				try {
+					thread.join();
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					return;
+				}
+			}
+		}
+	}
+
+	@Override
+	public boolean isRunning() {
+		return this.running;
+	}
+
+	@Override
+	public boolean isAutoStartup() {
+		return this.autoStartup;
+	}
+
+	private void awaitCapacity(long wrapPoint) {
+		long cleared;
+		while (wrapPoint > (cleared = this.cleared.get())) {
+			LockSupport.parkNanos(1_000);
+		}
+		this.clearedCache = cleared;
+	}
+
+	// clears the slots every subscriber has passed, before publishers may claim them
+	// again; one subscriber at a time, and a subscriber that finds another at it leaves it
+	// to that one, which looks again when it's done
+	private void clear() {
+		while (this.clearing.compareAndSet(false, true)) {
+			var from = this.cleared.get() + 1;
+			var to = slowest();
+			try {
+				for (var sequence = from; sequence <= to; sequence++) {
+					this.entries[(int) sequence & this.mask] = null;
+				}
+				if (to >= from) {
+					this.cleared.set(to);
+				}
+			}
+			finally {
+				this.clearing.set(false);
+			}
+			if (slowest() <= to) {
+				return;
+			}
+		}
+	}
+
+	private long slowest() {
+		var slowest = Long.MAX_VALUE;
+		for (var subscriber : this.subscribers) {
+			slowest = Math.min(slowest, subscriber.sequence.get());
+		}
+		return slowest;
+	}
+
+	private boolean isPublished(long sequence) {
+		var lap = (int) PUBLISHED.getVolatile(this.published, (int) sequence & this.mask);
+		return lap == (int) (sequence >>> this.lapShift);
+	}
+
+	// the last of the sequences from next up to the last claimed one that is published
+	// with all those before it
+	private long highestPublished(long next) {
+		var last = this.claimed.get() - 1;
+		for (var sequence = next; sequence <= last; sequence++) {
+			if (!isPublished(sequence)) {
+				return sequence - 1;
+			}
+		}
+		return last;
+	}
+
+	private final class Subscriber {
+
+		private final String name;
+
+		private final BatchListener<? super E> listener;
+
+		// the last sequence this subscriber has finished with
+		private final AtomicLong sequence;
+
+		private volatile boolean parked;
+
+		private volatile @Nullable Thread thread;
+
+		Subscriber(String name, BatchListener<? super E> listener, long sequence) {
+			this.name = name;
+			this.listener = listener;
+			this.sequence = new AtomicLong(sequence);
+		}
+
+		@SuppressWarnings("unchecked")
+		void run() {
+			var next = this.sequence.get() + 1;
+			var idle = 0;
+			while (true) {
+				var available = highestPublished(next);
+				if (available >= next) {
+					for (var sequence = next; sequence <= available; sequence++) {
+						var event = (E) RingBufferEventBus.this.entries[(int) sequence & RingBufferEventBus.this.mask];
+						try {
+							this.listener.onEvent(event, sequence == available);
+						}
+						catch (Exception | Error ex) {
+							logger.error("listener " + this.name + " failed on " + event, ex);
+						}
+					}
+					this.sequence.set(available);
+					clear();
+					next = available + 1;
+					idle = 0;
+				}
+				else if (RingBufferEventBus.this.stopped && RingBufferEventBus.this.publishing.get() == 0
+						&& next >= RingBufferEventBus.this.claimed.get()) {
+					return;
+				}
+				else if (idle < SPINS) {
+					idle++;
+					Thread.onSpinWait();
+				}
+				else {
+					this.parked = true;
+					if (!isPublished(next) && !RingBufferEventBus.this.stopped) {
+						LockSupport.park(this);
+					}
+					this.parked = false;
+				}
+			}
+		}
+
+		long backlog() {
+			return RingBufferEventBus.this.claimed.get() - 1 - this.sequence.get();
+		}
+
+	}
+
+}
@@ -0,0 +1,291 @@
+package com.example.framework;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jspecify.annotations.Nullable;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Spreads the customers across several databases, each with its own
+ * {@link JdbcCustomerRepository}. Every shard generates ids with
+ * {@code id % shards == index} (see {@link JdbcCustomerRepository#forShard}), so an id
+ * always routes back to the shard that created it and no global sequence is needed.
+ * <p>
+ * Lookups by id are grouped per shard and the shards are queried in parallel on virtual
+ * threads, as are {@link #findAll()} and {@link #findPage}. New customers are dealt out
+ * round-robin and written as one batch per shard. Each shard has its own transaction, so
+ * a {@link #saveAll} that spans shards isn't atomic, and neither is a {@link #bulkLoad}.
+ */
+class ShardedCustomerRepository implements CustomerRepository, AutoCloseable {
+
+	private final List<CustomerRepository> shards;
+
+	private final List<DataSource> dataSources;
+
+	private final int batchSize;
+
+	private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+	private final AtomicInteger next = new AtomicInteger();
+
+	ShardedCustomerRepository(List<CustomerRepository> shards, List<DataSource> dataSources, int batchSize) {
+		Assert.notEmpty(shards, "there must be at least one shard");
+		this.shards = List.copyOf(shards);
+		this.dataSources = List.copyOf(dataSources);
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * One pooled, transactional shard per url in {@code customer.sharding.urls}, read the
+	 * same way as the primary's {@code spring.datasource.*} properties.
+	 */
+	static ShardedCustomerRepository from(Environment environment, String[] urls, String username,
+			@Nullable String password, @Nullable MeterRegistry meterRegistry) {
+		var batchSize = environment.getProperty("customer.jdbc.batch-size", Integer.class,
+				JdbcCustomerRepository.DEFAULT_BATCH_SIZE);
+		var fetchSize = environment.getProperty("customer.jdbc.fetch-size", Integer.class,
+				JdbcCustomerRepository.DEFAULT_FETCH_SIZE);
+		var metrics = environment.getProperty("customer.metrics.enabled", Boolean.class, true);
+		var shards = new ArrayList<CustomerRepository>();
+		var dataSources = new ArrayList<DataSource>();
+		for (var i = 0; i < urls.length; i++) {
+			var dataSource = DataSources.pooled(environment, "customer-shard-" + i, urls[i], username, password,
+					meterRegistry);
+			var transactionTemplate = new TransactionTemplate(new JdbcTransactionManager(dataSource));
+			var raw = JdbcCustomerRepository.forShard(JdbcClient.create(dataSource), dataSource, batchSize,
+					fetchSize, i, urls.length);
+			shards.add(Transactions.transactional(transactionTemplate, raw, metrics ? meterRegistry : null));
+			dataSources.add(dataSource);
+		}
+		return new ShardedCustomerRepository(shards, dataSources, batchSize);
+	}
+
+	@Override
+	public Collection<Customer> findAll() {
+		var tasks = new ArrayList<Callable<Collection<Customer>>>();
+		for (var shard : this.shards) {
+			tasks.add(shard::findAll);
+		}
+		return flatten(gather(tasks));
+	}
+
+	// one shard at a time: the consumer needn't be thread-safe, and only one cursor is
+	// open at once
+	@Override
+	public void scanAll(Consumer<Customer> consumer) {
+		for (var shard : this.shards) {
+			shard.scanAll(consumer);
+		}
+	}
+
+	// each shard's first limit ids after the cursor between them hold the overall first
+	// limit, so a merge of the shard pages is the page
+	@Override
+	public CustomerPage findPage(@Nullable Integer afterId, int limit) {
+		var tasks = new ArrayList<Callable<CustomerPage>>();
+		for (var shard : this.shards) {
+			tasks.add(() -> shard.findPage(afterId, limit));
+		}
+		var merged = new ArrayList<Customer>();
+		var more = false;
+		for (var page : gather(tasks)) {
+			merged.addAll(page.customers());
+			more |= page.hasNext();
+		}
+		merged.sort(Comparator.comparing(Customer::id));
+		if (merged.size() > limit) {
+			more = true;
+			merged.subList(limit, merged.size()).clear();
+		}
+		return new CustomerPage(merged, more && !merged.isEmpty() ? merged.getLast().id() : null);
+	}
+
+	@Override
+	public Collection<Customer> findById(Iterable<Integer> ids) {
+		var groups = new ArrayList<List<Integer>>();
+		for (var i = 0; i < this.shards.size(); i++) {
+			groups.add(new ArrayList<>());
+		}
+		for (var id : ids) {
+			groups.get(shardIndex(id)).add(id);
+		}
+		var tasks = new ArrayList<Callable<Collection<Customer>>>();
+		for (var i = 0; i < groups.size(); i++) {
+			var shard = this.shards.get(i);
+			var group = groups.get(i);
+			if (!group.isEmpty()) {
+				tasks.add(() -> shard.findById(group));
+			}
+		}
+		return flatten(gather(tasks));
+	}
+
+	// the saved customers come back in the order they were given
+	@Override
+	public Collection<Customer> saveAll(Collection<Customer> customers) {
+		var size = this.shards.size();
+		var start = Math.floorMod(this.next.getAndAdd(customers.size()), size);
+		var groups = new ArrayList<List<Customer>>();
+		for (var i = 0; i < size; i++) {
+			groups.add(new ArrayList<>());
+		}
+		var position = 0;
+		for (var customer : customers) {
+			groups.get((start + position++) % size).add(customer);
+		}
+		var tasks = new ArrayList<Callable<Collection<Customer>>>();
+		for (var i = 0; i < size; i++) {
+			var shard = this.shards.get(i);
+			var group = groups.get(i);
+			tasks.add(() -> group.isEmpty() ? List.of() : shard.saveAll(group));
+		}
+		var saved = gather(tasks).stream().map(ArrayList::new).toList();
+		var ordered = new ArrayList<Customer>(customers.size());
+		for (var i = 0; i < customers.size(); i++) {
+			var shard = (start + i) % size;
+			ordered.add(saved.get(shard).get(i / size));
+		}
+		return ordered;
+	}
+
+	// COPY can't assign shard-aware ids, so the stream is dealt out in batches and each
+	// batch is written with a multi-row insert; a shard's next batch waits for its last.
+	// Unlike the other repositories' bulk loads this isn't atomic: every batch commits in
+	// its own transaction, so a failure part way through leaves the batches already
+	// written in place, and cancels the ones still running
+	@Override
+	public BulkLoadResult bulkLoad(Stream<Customer> customers) {
+		var start = Instant.now();
+		var size = this.shards.size();
+		var batches = new ArrayList<List<Customer>>();
+		var pending = new ArrayList<@Nullable Future<Collection<Customer>>>();
+		for (var i = 0; i < size; i++) {
+			batches.add(new ArrayList<>(this.batchSize));
+			pending.add(null);
+		}
+		var rows = 0L;
+		var position = 0L;
+		try {
+			for (var iterator = customers.iterator(); iterator.hasNext();) {
+				var shard = (int) (position++ % size);
+				var batch = batches.get(shard);
+				batch.add(iterator.next());
+				if (batch.size() == this.batchSize) {
+					rows += await(pending.get(shard));
+					pending.set(shard, submit(shard, batch));
+					batches.set(shard, new ArrayList<>(this.batchSize));
+				}
+			}
+			// every shard's last batch goes out before any of them is waited for
+			for (var shard = 0; shard < size; shard++) {
+				if (!batches.get(shard).isEmpty()) {
+					rows += await(pending.get(shard));
+					pending.set(shard, submit(shard, batches.get(shard)));
+				}
+			}
+			for (var shard = 0; shard < size; shard++) {
+				rows += await(pending.get(shard));
+				pending.set(shard, null);
+			}
+		}
+		finally {
+			for (var future : pending) {
+				if (future != null) {
+					future.cancel(true);
+				}
+			}
+		}
+		return new BulkLoadResult(rows, Duration.between(start, Instant.now()));
+	}
+
+	@Override
+	public void close() throws Exception {
+		this.executor.close();
+		for (var dataSource : this.dataSources) {
+			if (dataSource instanceof AutoCloseable closeable) {
+				closeable.close();
+			}
+		}
+	}
+
+	int shardIndex(int id) {
+		return Math.floorMod(id, this.shards.size());
+	}
+
+	private Future<Collection<Customer>> submit(int shard, List<Customer> batch) {
+		return this.executor.submit(() -> this.shards.get(shard).saveAll(batch));
+	}
+
+	private <T> List<T> gather(List<Callable<T>> tasks) {
+		if (tasks.size() == 1) {
+			// nothing to overlap, so stay on the caller's thread
+			try {
+				return List.of(tasks.getFirst().call());
+			}
+			catch (RuntimeException e) {
+				throw e;
+			}
+			catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		var futures = new ArrayList<Future<T>>();
+		for (var task : tasks) {
+			futures.add(this.executor.submit(task));
+		}
+		var results = new ArrayList<T>(futures.size());
+		try {
+			for (var future : futures) {
+				results.add(get(future));
+			}
+		}
+		finally {
+			futures.forEach(future -> future.cancel(true));
+		}
+		return results;
+	}
+
+	private static long await(@Nullable Future<Collection<Customer>> future) {
+		return future == null ? 0 : get(future).size();
+	}
+
+	private static <T> T get(Future<T> future) {
+		try {
+			return future.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted waiting for a shard", e);
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new IllegalStateException(e.getCause());
+		}
+	}
+
+	private static Collection<Customer> flatten(List<Collection<Customer>> results) {
+		return results.stream().flatMap(Collection::stream).toList();
+	}
+
+}
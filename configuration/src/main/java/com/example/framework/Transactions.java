@@ -0,0 +1,253 @@
+package com.example.framework;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.jspecify.annotations.Nullable;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.AnnotationTransactionAttributeSource;
+import org.springframework.transaction.interceptor.TransactionAttribute;
+import org.springframework.transaction.interceptor.TransactionAttributeSource;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Wraps an object in a proxy that runs each of its interface methods in a transaction.
+ * <p>
+ * Each method's transaction is worked out once, when the proxy is made. A
+ * {@code @Transactional} on the target's method or class, or on the interface, wins;
+ * otherwise a method whose name starts with {@code find}, {@code get}, {@code scan},
+ * {@code count} or {@code exists} is a read and runs read-only, and anything else runs
+ * with the template's settings. A method marked
+ * {@code @Transactional(propagation = Propagation.SUPPORTS)} skips demarcation entirely
+ * and just joins a transaction that's already open, which suits single-statement reads
+ * that don't need the read-only routing. Annotated methods roll back according to their
+ * rollback rules, the rest on any exception, as {@link TransactionTemplate} does.
+ * <p>
+ * The transaction is begun and committed on the {@link PlatformTransactionManager}
+ * directly, without a callback to allocate, and the call goes through a
+ * {@link MethodHandle} bound to the target, made for each method along with its
+ * transaction, rather than through {@link Method#invoke}. Apart from the transaction the
+ * only allocation is the argument array the proxy itself makes. Whatever the target
+ * throws is rethrown as it is. Set {@code -Dcustomer.transactions.trace=true} to print
+ * each call.
+ * <p>
+ * Given a {@link MeterRegistry}, each method also records its {@link RepositoryMetrics};
+ * without one the only cost is a null check.
+ */
+abstract class Transactions {
+
+	private static final boolean TRACE = Boolean.getBoolean("customer.transactions.trace");
+
+	private static final Set<String> READ_PREFIXES = Set.of("find", "get", "scan", "count", "exists");
+
+	private static final TransactionAttributeSource ANNOTATIONS = new AnnotationTransactionAttributeSource();
+
+	static <T> T transactional(TransactionTemplate transactionTemplate, T target) {
+		return transactional(transactionTemplate, target, null);
+	}
+
+	@SuppressWarnings("unchecked")
+	static <T> T transactional(TransactionTemplate transactionTemplate, T target,
+			@Nullable MeterRegistry meterRegistry) {
+		var transactionManager = transactionTemplate.getTransactionManager();
+		Assert.state(transactionManager != null, "the transaction template has no transaction manager");
+		var interfaces = target.getClass().getInterfaces();
+		var attributes = attributes(transactionTemplate, target, interfaces, meterRegistry);
+		return (T) Proxy.newProxyInstance(target.getClass().getClassLoader(), interfaces,
+				new TransactionalInvocationHandler(target, transactionManager, attributes));
+	}
+
+	private static Map<Method, MethodAttribute> attributes(TransactionTemplate transactionTemplate, Object target,
+			Class<?>[] interfaces, @Nullable MeterRegistry meterRegistry) {
+		var targetClass = target.getClass();
+		var readOnly = new DefaultTransactionDefinition(transactionTemplate);
+		readOnly.setReadOnly(true);
+		var attributes = new HashMap<Method, MethodAttribute>();
+		for (var type : interfaces) {
+			for (var method : type.getMethods()) {
+				if (Modifier.isStatic(method.getModifiers())) {
+					continue;
+				}
+				TransactionDefinition definition = ANNOTATIONS.getTransactionAttribute(method, targetClass);
+				if (definition == null) {
+					definition = isRead(method) ? readOnly : transactionTemplate;
+				}
+				var demarcate = definition.getPropagationBehavior() != TransactionDefinition.PROPAGATION_SUPPORTS;
+				var metrics = (meterRegistry != null)
+						? new RepositoryMetrics(meterRegistry, targetClass.getSimpleName(), method.getName()) : null;
+				attributes.putIfAbsent(method,
+						new MethodAttribute(invoker(method, target), demarcate ? definition : null, metrics));
+			}
+		}
+		return Map.copyOf(attributes);
+	}
+
+	// takes the arguments as the proxy hands them over and returns the result boxed
+	private static MethodHandle invoker(Method method, Object target) {
+		// the interfaces needn't be public
+		method.trySetAccessible();
+		try {
+			return MethodHandles.lookup()
+				.unreflect(method)
+				.bindTo(target)
+				.asSpreader(Object[].class, method.getParameterCount())
+				.asType(MethodType.methodType(Object.class, Object[].class));
+		}
+		catch (IllegalAccessException ex) {
+			throw new IllegalStateException("cannot call " + method, ex);
+		}
+	}
+
+	private static boolean isRead(Method method) {
+		var name = method.getName();
+		for (var prefix : READ_PREFIXES) {
+			if (name.startsWith(prefix)
+					&& (name.length() == prefix.length() || Character.isUpperCase(name.charAt(prefix.length())))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	// a null definition runs the method without opening a transaction of its own
+	private record MethodAttribute(MethodHandle invoker, @Nullable TransactionDefinition definition,
+			@Nullable RepositoryMetrics metrics) {
+
+		boolean rollbackOn(Throwable ex) {
+			return !(this.definition instanceof TransactionAttribute attribute) || attribute.rollbackOn(ex);
+		}
+
+	}
+
+	private static final class TransactionalInvocationHandler implements InvocationHandler {
+
+		private final Object target;
+
+		private final PlatformTransactionManager transactionManager;
+
+		private final Map<Method, MethodAttribute> attributes;
+
+		TransactionalInvocationHandler(Object target, PlatformTransactionManager transactionManager,
+				Map<Method, MethodAttribute> attributes) {
+			this.target = target;
+			this.transactionManager = transactionManager;
+			this.attributes = attributes;
+		}
+
+		@Override
+		public @Nullable Object invoke(Object proxy, Method method, @Nullable Object[] args) throws Throwable {
+			var attribute = this.attributes.get(method);
+			if (attribute == null) {
+				return invokeObjectMethod(proxy, method, args);
+			}
+			if (TRACE) {
+				IO.println("calling " + method.getName() + " with arguments " + Arrays.toString(args));
+			}
+			var metrics = attribute.metrics();
+			if (metrics != null) {
+				return invokeMeasured(args, attribute, metrics);
+			}
+			var definition = attribute.definition();
+			if (definition == null) {
+				return invokeTarget(attribute, args);
+			}
+			var status = this.transactionManager.getTransaction(definition);
+			Object result;
+			try {
+				result = invokeTarget(attribute, args);
+			}
+			catch (Throwable ex) {
+				completeOnException(status, attribute, ex);
+				throw ex;
+			}
+			this.transactionManager.commit(status);
+			return result;
+		}
+
+		// the same as invoke, timing the transaction and the call inside it
+		private @Nullable Object invokeMeasured(@Nullable Object[] args, MethodAttribute attribute,
+				RepositoryMetrics metrics) throws Throwable {
+			var start = System.nanoTime();
+			var definition = attribute.definition();
+			var status = (definition != null) ? this.transactionManager.getTransaction(definition) : null;
+			var callStart = System.nanoTime();
+			Object result;
+			try {
+				result = invokeTarget(attribute, args);
+			}
+			catch (Throwable ex) {
+				metrics.call(callStart);
+				if (status != null) {
+					metrics.completed(!completeOnException(status, attribute, ex));
+				}
+				metrics.invocation(start);
+				throw ex;
+			}
+			metrics.call(callStart);
+			if (status != null) {
+				try {
+					this.transactionManager.commit(status);
+				}
+				catch (RuntimeException | Error ex) {
+					metrics.completed(false);
+					metrics.invocation(start);
+					throw ex;
+				}
+				metrics.completed(true);
+			}
+			metrics.invocation(start);
+			metrics.rows(result);
+			return result;
+		}
+
+		// a method without parameters gets null rather than an empty array, which the
+		// spreader takes as well
+		private static @Nullable Object invokeTarget(MethodAttribute attribute, @Nullable Object[] args)
+				throws Throwable {
+			return (Object) attribute.invoker().invokeExact(args);
+		}
+
+		// equals, hashCode and toString don't need a transaction
+		private Object invokeObjectMethod(Object proxy, Method method, @Nullable Object[] args) {
+			return switch (method.getName()) {
+				case "equals" -> args != null && proxy == args[0];
+				case "hashCode" -> System.identityHashCode(proxy);
+				case "toString" -> "transactional " + this.target;
+				default -> throw new IllegalStateException("unexpected method " + method);
+			};
+		}
+
+		// a failure to roll back or commit wins, with the original failure attached;
+		// returns whether the transaction was rolled back
+		private boolean completeOnException(TransactionStatus status, MethodAttribute attribute, Throwable ex) {
+			try {
+				if (attribute.rollbackOn(ex)) {
+					this.transactionManager.rollback(status);
+					return true;
+				}
+				this.transactionManager.commit(status);
+				return false;
+			}
+			catch (RuntimeException | Error completionEx) {
+				completionEx.addSuppressed(ex);
+				throw completionEx;
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,71 @@
+package com.example.frameworkplusplus;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.jspecify.annotations.Nullable;
+import org.springframework.context.index.CandidateComponentsIndex;
+import org.springframework.context.index.CandidateComponentsIndexLoader;
+import org.springframework.core.io.UrlResource;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URL;
+import java.util.Collections;
+
+/**
+ * Checks the {@code META-INF/spring.components} index that {@code spring-context-indexer}
+ * writes at compile time before the scanner relies on it. The index lists every class in
+ * the module annotated with an {@code @Indexed} stereotype, directly or through
+ * meta-annotations such as {@code @Configuration}'s, and {@code @ComponentScan} then
+ * reads the candidates from it instead of walking the classpath and parsing every class
+ * file in the package. The candidates' own class files are still read, for the
+ * qualifiers and the other annotations on them.
+ * <p>
+ * The index is stale if a class it lists is gone. A stale index is replaced by an empty
+ * one for that class loader, which has no packages in it, so the scanner falls back to
+ * scanning. Without an index the scanner scans anyway. A component added by a compiler
+ * that doesn't run the annotation processor, as an IDE may, isn't in the index and can't
+ * be told apart from a class that isn't one; rebuild with Maven after adding one.
+ */
+abstract class ComponentIndex {
+
+    private static final Log logger = LogFactory.getLog(ComponentIndex.class);
+
+    /**
+     * Returns whether the class loader's component indexes can be used; if they can't,
+     * scanning is used instead. Call it before the context is created.
+     */
+    static boolean verify(ClassLoader classLoader) {
+        try {
+            var indexes = Collections.list(
+                    classLoader.getResources(CandidateComponentsIndexLoader.COMPONENTS_RESOURCE_LOCATION));
+            for (var index : indexes) {
+                var stale = staleness(index, classLoader);
+                if (stale != null) {
+                    logger.warn("ignoring the component index " + index + " and scanning instead, " + stale);
+                    CandidateComponentsIndexLoader.addIndex(classLoader, new CandidateComponentsIndex());
+                    return false;
+                }
+            }
+            return !indexes.isEmpty();
+        }
+        catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    // why the index is stale, or null if it isn't
+    private static @Nullable String staleness(URL index, ClassLoader classLoader) throws IOException {
+        var entries = PropertiesLoaderUtils.loadProperties(new UrlResource(index));
+        for (var type : entries.stringPropertyNames()) {
+            // packages are listed by name, for their package-info
+            var name = entries.getProperty(type).contains("package-info") ? type + ".package-info" : type;
+            if (classLoader.getResource(name.replace('.', '/') + ClassUtils.CLASS_FILE_SUFFIX) == null) {
+                return type + " no longer exists";
+            }
+        }
+        return null;
+    }
+}
@@ -1,10 +1,17 @@
 package com.example.frameworkplusplus;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.jspecify.annotations.Nullable;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.aot.hint.MemberCategory;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotContribution;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationAotProcessor;
 import org.springframework.beans.factory.config.BeanFactoryPostProcessor;
 import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
@@ -12,31 +19,53 @@ import org.springframework.beans.factory.support.BeanDefinitionRegistry;
 import org.springframework.beans.factory.support.BeanDefinitionRegistryPostProcessor;
 import org.springframework.context.annotation.*;
 import org.springframework.core.env.Environment;
+import org.springframework.format.datetime.standard.DurationFormatterUtils;
+import org.springframework.jdbc.UncategorizedSQLException;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.jdbc.datasource.DataSourceUtils;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.jdbc.support.SQLErrorCodeSQLExceptionTranslator;
+import org.springframework.jdbc.support.SQLExceptionTranslator;
 import org.springframework.jdbc.support.SqlArrayValue;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.Assert;
+import org.springframework.util.ClassUtils;
 
 import javax.sql.DataSource;
 import java.lang.reflect.Array;
-import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Duration;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class ConfigurationApplication {
 
     public static void main1(String[] args) throws Exception {
 
-        var applicationContext = new AnnotationConfigApplicationContext(CustomerJavaConfiguration.class);
+        // scans instead of reading a component index the classes have outgrown
+        ComponentIndex.verify(ConfigurationApplication.class.getClassLoader());
+        var applicationContext = new AnnotationConfigApplicationContext();
+        var timeline = Boolean.getBoolean("customer.startup.timeline")
+                ? new StartupTimeline(10_000, Boolean.getBoolean("customer.startup.jfr")) : null;
+        if (timeline != null) {
+            applicationContext.setApplicationStartup(timeline);
+        }
+        applicationContext.register(CustomerJavaConfiguration.class);
+        applicationContext.refresh();
+        if (timeline != null) {
+            timeline.report(20).forEach(IO::println);
+        }
         applicationContext.start();
         var runner = applicationContext.getBean(CustomerRepositoryRunner.class);
         runner.run(args);
@@ -57,21 +86,70 @@ class TxBeanPostProcessor implements BeanPostProcessor {
 
     private final ObjectProvider<TransactionTemplate> transactionTemplate;
 
-    TxBeanPostProcessor(ObjectProvider<TransactionTemplate> transactionTemplate) {
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    private final boolean metrics;
+
+    TxBeanPostProcessor(ObjectProvider<TransactionTemplate> transactionTemplate,
+                        ObjectProvider<MeterRegistry> meterRegistry, boolean metrics) {
         this.transactionTemplate = transactionTemplate;
+        this.meterRegistry = meterRegistry;
+        this.metrics = metrics;
     }
 
     @Override
     public @Nullable Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
         if (bean instanceof Tx tx) {
             IO.println("creating transactional proxy for " + beanName);
-            return Transactions.transactional(this.transactionTemplate.getIfAvailable(), tx);
+            return Transactions.transactional(this.transactionTemplate.getIfAvailable(), tx,
+                    this.metrics ? this.meterRegistry.getIfAvailable() : null);
         }
 
         return bean;
     }
 }
 
+/**
+ * Does ahead of time what {@link TxBeanPostProcessor} needs at runtime, so {@code Tx}
+ * beans keep their transactions in a native image: registers the JDK proxy for each
+ * {@code Tx} bean's interfaces, invocation of those interfaces' methods for
+ * {@link Transactions} to make its method handles from, and the bean's own class for it
+ * to read the {@code @Transactional} attributes of.
+ */
+class TxBeanFactoryInitializationAotProcessor implements BeanFactoryInitializationAotProcessor {
+
+    @Override
+    public @Nullable BeanFactoryInitializationAotContribution processAheadOfTime(
+            ConfigurableListableBeanFactory beanFactory) {
+
+        var transactional = new LinkedHashSet<Class<?>>();
+
+        for (var name : beanFactory.getBeanDefinitionNames()) {
+            var type = beanFactory.getType(name);
+            if (type != null && Tx.class.isAssignableFrom(type) && !type.isInterface()) {
+                transactional.add(ClassUtils.getUserClass(type));
+            }
+        }
+
+        if (transactional.isEmpty()) {
+            return null;
+        }
+
+        return (generationContext, _) -> {
+            var hints = generationContext.getRuntimeHints();
+            for (var type : transactional) {
+                var interfaces = type.getInterfaces();
+                hints.proxies().registerJdkProxy(interfaces);
+                for (var iface : interfaces) {
+                    hints.reflection().registerType(iface, MemberCategory.INVOKE_PUBLIC_METHODS);
+                }
+                // a registered type's methods and their annotations can be looked up
+                hints.reflection().registerType(type);
+            }
+        };
+    }
+}
+
 class MyBeanFactoryPostProcessor implements BeanDefinitionRegistryPostProcessor,
         BeanFactoryPostProcessor {
 
@@ -109,8 +187,15 @@ class MyThing {
 class CustomerJavaConfiguration {
 
     @Bean
-    TxBeanPostProcessor txBeanPostProcessor(ObjectProvider<TransactionTemplate> transactionTemplate) {
-        return new TxBeanPostProcessor(transactionTemplate);
+    TxBeanPostProcessor txBeanPostProcessor(ObjectProvider<TransactionTemplate> transactionTemplate,
+                                            ObjectProvider<MeterRegistry> meterRegistry, Environment environment) {
+        return new TxBeanPostProcessor(transactionTemplate, meterRegistry,
+                environment.getProperty("customer.metrics.enabled", Boolean.class, true));
+    }
+
+    @Bean
+    static TxBeanFactoryInitializationAotProcessor txBeanFactoryInitializationAotProcessor() {
+        return new TxBeanFactoryInitializationAotProcessor();
     }
 
     @Bean
@@ -125,12 +210,36 @@ class CustomerJavaConfiguration {
         return new CustomerRepositoryRunner(repository);
     }
 
+    @Bean
+    MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+
     @Bean(name = "db")
-    DriverManagerDataSource driverManagerDataSource(@Value("${spring.datasource.username}") String username,
-                                                    Environment environment) {
+    DataSource dataSource(@Value("${spring.datasource.username}") String username,
+                          Environment environment, ObjectProvider<MeterRegistry> meterRegistry) {
         var pw = environment.getProperty("spring.datasource.password");
         var url = environment.getProperty("spring.datasource.url");
-        return new DriverManagerDataSource(url, username, pw);
+        var pooled = environment.getProperty("customer.datasource.pool.enabled", Boolean.class, true);
+        var registry = meterRegistry.getIfAvailable();
+        var primary = pooled ? DataSources.pooled(environment, "customer", url, username, pw, registry)
+                : new DriverManagerDataSource(url, username, pw);
+        var replicaUrls = environment.getProperty("customer.datasource.replicas", String[].class, new String[0]);
+        if (replicaUrls.length == 0) {
+            return primary;
+        }
+        var replicas = new ArrayList<DataSource>();
+        for (var i = 0; i < replicaUrls.length; i++) {
+            var poolName = "customer-replica-" + i;
+            replicas.add(pooled ? DataSources.replica(environment, poolName, replicaUrls[i], username, pw, registry)
+                    : new DriverManagerDataSource(replicaUrls[i], username, pw));
+        }
+        var selection = environment.getProperty("customer.datasource.replica-selection",
+                ReplicaRoutingDataSource.Selection.class, ReplicaRoutingDataSource.Selection.ROUND_ROBIN);
+        var retryAfter = environment.getProperty("customer.datasource.replica-retry-after", "5s");
+        var router = new ReplicaRoutingDataSource(primary, replicas, selection,
+                DurationFormatterUtils.detectAndParse(retryAfter));
+        return DataSources.readWriteSplitting(primary, router);
     }
 
     @Bean
@@ -149,8 +258,13 @@ class CustomerJavaConfiguration {
     }
 
     @Bean
-    JdbcCustomerRepository customerRepository(JdbcClient jdbcClient) {
-        return new JdbcCustomerRepository(jdbcClient);
+    JdbcCustomerRepository customerRepository(JdbcClient jdbcClient, DataSource dataSource,
+                                              Environment environment) {
+        var batchSize = environment.getProperty("customer.jdbc.batch-size", Integer.class,
+                JdbcCustomerRepository.DEFAULT_BATCH_SIZE);
+        var fetchSize = environment.getProperty("customer.jdbc.fetch-size", Integer.class,
+                JdbcCustomerRepository.DEFAULT_FETCH_SIZE);
+        return new JdbcCustomerRepository(jdbcClient, dataSource, batchSize, fetchSize);
     }
 
 }
@@ -164,39 +278,32 @@ class CustomerRepositoryRunner {
     }
 
     void run(String[] args) throws Exception {
-        repository.findAll().forEach(IO::println);
+        repository.scanAll(IO::println);
         var saved = repository.saveAll(List.of(new Customer(null, "Alexey"), new Customer(null, "Josh")));
         saved.forEach(IO::println);
     }
 
 }
 
+// beans that implement this get a transactional proxy from TxBeanPostProcessor, with each
+// method's transaction worked out by Transactions
 interface Tx {
 }
 
-abstract class Transactions {
-
-    static <T> T transactional(TransactionTemplate transactionTemplate, T target) {
-        return (T) Proxy.newProxyInstance(target.getClass().getClassLoader(), target.getClass().getInterfaces(),
-                (_, method, args) -> {
-                    return transactionTemplate.execute(_ -> {
-                        try {
-                            IO.println("calling " + method.getName() + " with arguments " + Arrays.toString(args));
-                            return method.invoke(target, args);
-                        } //
-                        catch (Exception e) {
-                            throw new RuntimeException(e);
-                        }
-                    });
-                });
+interface CustomerRepository {
 
-    }
+    Collection<Customer> findAll();
 
-}
+    // visits every customer without materializing the table; the consumer runs while the
+    // cursor is open, so it mustn't hold on to the rows it is given
+    void scanAll(Consumer<Customer> consumer);
 
-interface CustomerRepository {
+    // keyset pagination on id: pass null for the first page, then the page's nextAfterId
+    CustomerPage findPage(@Nullable Integer afterId, int limit);
 
-    Collection<Customer> findAll();
+    // streams the customers into the table with COPY on the current transaction's
+    // connection; a failure part way through rolls back with the rest of the transaction
+    BulkLoadResult bulkLoad(Stream<Customer> customers);
 
     Collection<Customer> findById(Iterable<Integer> ids);
 
@@ -211,17 +318,72 @@ class JdbcCustomerRepository implements CustomerRepository {
 
     private final RowMapper<Customer> rowMapper = (rs, _) -> new Customer(rs.getInt("id"), rs.getString("name"));
 
+    static final int DEFAULT_BATCH_SIZE = 500;
+
+    static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private static final String COPY_SQL = "copy customer (name) from stdin with (format csv)";
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
     private final JdbcClient db;
 
-    JdbcCustomerRepository(JdbcClient jdbcClient) {
+    private final DataSource dataSource;
+
+    private final SQLExceptionTranslator exceptionTranslator;
+
+    private final int batchSize;
+
+    private final int fetchSize;
+
+    JdbcCustomerRepository(JdbcClient jdbcClient, DataSource dataSource, int batchSize, int fetchSize) {
+        Assert.isTrue(batchSize > 0, "the batch size must be greater than zero");
+        Assert.isTrue(fetchSize > 0, "the fetch size must be greater than zero");
         this.db = jdbcClient;
+        this.dataSource = dataSource;
+        this.exceptionTranslator = new SQLErrorCodeSQLExceptionTranslator(dataSource);
+        this.batchSize = batchSize;
+        this.fetchSize = fetchSize;
     }
 
+    @Transactional(readOnly = true)
     @Override
     public Collection<Customer> findAll() {
         return this.db.sql("select * from customer").query(this.rowMapper).list();
     }
 
+    // postgres only opens a server-side cursor for a positive fetch size inside a
+    // transaction; otherwise the driver buffers the whole result set
+    @Transactional(readOnly = true)
+    @Override
+    public void scanAll(Consumer<Customer> consumer) {
+        try (var customers = this.db.sql("select * from customer")
+                .withFetchSize(this.fetchSize)
+                .query(this.rowMapper)
+                .stream()) {
+            customers.forEach(consumer);
+        }
+    }
+
+    // seeks straight to the first id after the cursor using the primary key index, so
+    // every page costs the same no matter how deep it is. one extra row is read to tell
+    // whether there's a next page
+    @Transactional(readOnly = true)
+    @Override
+    public CustomerPage findPage(@Nullable Integer afterId, int limit) {
+        Assert.isTrue(limit > 0, "the limit must be greater than zero");
+        var customers = this.db.sql("select * from customer where id > ? order by id limit ?")
+                .params(afterId == null ? Integer.MIN_VALUE : afterId, (long) limit + 1)
+                .query(this.rowMapper)
+                .list();
+        if (customers.size() <= limit) {
+            return new CustomerPage(customers, null);
+        }
+        var page = customers.subList(0, limit);
+        return new CustomerPage(page, page.getLast().id());
+    }
+
+    @Transactional(readOnly = true)
     @Override
     public Collection<Customer> findById(Iterable<Integer> ids) {
         return this.db.sql("select * from customer where id = any(?)")
@@ -230,19 +392,77 @@ class JdbcCustomerRepository implements CustomerRepository {
                 .list();
     }
 
+    // one multi-row insert per chunk: the names travel as a single array parameter and
+    // the generated rows come straight back from RETURNING, so there's no second select
     @Override
     public Collection<Customer> saveAll(Collection<Customer> customers) {
-        var ids = new ArrayList<Integer>();
-        var counter = 0;
+        var saved = new ArrayList<Customer>(customers.size());
+        var names = new ArrayList<String>(Math.min(customers.size(), this.batchSize));
         for (var c : customers) {
-            var keyHolder = new GeneratedKeyHolder();
-            // if (counter == 1) throw new IllegalStateException("ooops!");
-            this.db.sql("insert into customer ( name) values (?)").params(c.name()).update(keyHolder);
-            var id = (Number) keyHolder.getKeyList().getFirst().get("id");
-            ids.add(id.intValue());
-            counter++;
+            names.add(c.name());
+            if (names.size() == this.batchSize) {
+                saved.addAll(insert(names));
+                names.clear();
+            }
+        }
+        if (!names.isEmpty()) {
+            saved.addAll(insert(names));
         }
-        return findById(ids);
+        return saved;
+    }
+
+    // the rows are written as csv in 64k chunks straight from the stream, so memory stays
+    // flat however many customers there are
+    @Override
+    public BulkLoadResult bulkLoad(Stream<Customer> customers) {
+        var start = System.nanoTime();
+        var connection = DataSourceUtils.getConnection(this.dataSource);
+        try {
+            var copy = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+            try {
+                var buffer = new StringBuilder(COPY_BUFFER_SIZE);
+                for (var iterator = customers.iterator(); iterator.hasNext(); ) {
+                    var name = iterator.next().name();
+                    if (name != null) {
+                        buffer.append('"').append(name.replace("\"", "\"\"")).append('"');
+                    }
+                    buffer.append('\n');
+                    if (buffer.length() >= COPY_BUFFER_SIZE) {
+                        writeToCopy(copy, buffer);
+                    }
+                }
+                writeToCopy(copy, buffer);
+                var rows = copy.endCopy();
+                return new BulkLoadResult(rows, Duration.ofNanos(System.nanoTime() - start));
+            }
+            finally {
+                if (copy.isActive()) {
+                    copy.cancelCopy();
+                }
+            }
+        }
+        catch (SQLException e) {
+            var translated = this.exceptionTranslator.translate("bulkLoad", COPY_SQL, e);
+            throw translated != null ? translated : new UncategorizedSQLException("bulkLoad", COPY_SQL, e);
+        }
+        finally {
+            DataSourceUtils.releaseConnection(connection, this.dataSource);
+        }
+    }
+
+    private static void writeToCopy(CopyIn copy, StringBuilder buffer) throws SQLException {
+        if (!buffer.isEmpty()) {
+            var bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copy.writeToCopy(bytes, 0, bytes.length);
+            buffer.setLength(0);
+        }
+    }
+
+    private List<Customer> insert(List<String> names) {
+        return this.db.sql("insert into customer (name) select * from unnest(?) returning id, name")
+                .params(new SqlArrayValue("text", names.toArray()))
+                .query(this.rowMapper)
+                .list();
     }
 
     private <T> T[] from(Iterable<T> iterable) {
@@ -254,4 +474,19 @@ class JdbcCustomerRepository implements CustomerRepository {
 }
 
 record Customer(Integer id, String name) {
+}
+
+record BulkLoadResult(long rows, Duration elapsed) {
+
+    double rowsPerSecond() {
+        var nanos = this.elapsed.toNanos();
+        return nanos == 0 ? 0 : this.rows * 1_000_000_000.0 / nanos;
+    }
+}
+
+record CustomerPage(List<Customer> customers, @Nullable Integer nextAfterId) {
+
+    boolean hasNext() {
+        return this.nextAfterId != null;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,88 @@
+package com.example.frameworkplusplus;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.jspecify.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The meters {@link Transactions} records for one repository method, all tagged with the
+ * repository and method name:
+ * <ul>
+ * <li>{@code repository.invocation}: the whole call, transaction included, with p50, p99
+ * and p999 and a histogram</li>
+ * <li>{@code repository.call}: just the call to the repository, so the difference is the
+ * time spent beginning and completing the transaction</li>
+ * <li>{@code repository.rows}: rows returned or written</li>
+ * <li>{@code repository.transactions}: transactions completed, by {@code outcome}</li>
+ * </ul>
+ * The time to get a connection is the pool's {@code hikaricp.connections.acquire}.
+ */
+final class RepositoryMetrics {
+
+    /**
+     * A result that knows how many rows it stands for. Collections count their elements.
+     */
+    interface RowCount {
+
+        long rows();
+    }
+
+    private final Timer invocation;
+
+    private final Timer call;
+
+    private final DistributionSummary rows;
+
+    private final Counter commits;
+
+    private final Counter rollbacks;
+
+    RepositoryMetrics(MeterRegistry meterRegistry, String repository, String method) {
+        var tags = Tags.of("repository", repository, "method", method);
+        this.invocation = Timer.builder("repository.invocation")
+                .tags(tags)
+                .publishPercentiles(0.5, 0.99, 0.999)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.call = Timer.builder("repository.call").tags(tags).register(meterRegistry);
+        this.rows = DistributionSummary.builder("repository.rows")
+                .baseUnit("rows")
+                .tags(tags)
+                .register(meterRegistry);
+        this.commits = Counter.builder("repository.transactions")
+                .tags(tags)
+                .tag("outcome", "commit")
+                .register(meterRegistry);
+        this.rollbacks = Counter.builder("repository.transactions")
+                .tags(tags)
+                .tag("outcome", "rollback")
+                .register(meterRegistry);
+    }
+
+    void invocation(long startNanos) {
+        this.invocation.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void call(long startNanos) {
+        this.call.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void rows(@Nullable Object result) {
+        if (result instanceof Collection<?> collection) {
+            this.rows.record(collection.size());
+        }
+        else if (result instanceof RowCount rowCount) {
+            this.rows.record(rowCount.rows());
+        }
+    }
+
+    void completed(boolean committed) {
+        (committed ? this.commits : this.rollbacks).increment();
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.frameworkplusplus;
+
+import org.jspecify.annotations.Nullable;
+import org.springframework.boot.context.metrics.buffering.BufferingApplicationStartup;
+import org.springframework.core.metrics.ApplicationStartup;
+import org.springframework.core.metrics.StartupStep;
+import org.springframework.core.metrics.jfr.FlightRecorderApplicationStartup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Records the steps Spring reports while it starts: reading the component classes,
+ * parsing the configuration classes, which includes component scanning, the
+ * {@code BeanRegistrar}s and the conditions on them, enhancing them with CGLIB, every
+ * bean factory post-processor, and every bean instantiation, each tagged with the
+ * post-processor or bean it was for. The steps are buffered by Boot's
+ * {@link BufferingApplicationStartup}, and {@link #report(int)} lists the steps that took
+ * longest on their own, their duration less the steps nested in them, so a bean isn't
+ * blamed for the dependencies it had created.
+ * <p>
+ * Only the first {@code capacity} steps are kept, as beans created later, prototypes
+ * for instance, report steps too. With {@code flightRecorder} every step is also sent to
+ * JFR as a {@code spring.startup} event. {@link ConfigurationApplication#main1} prints the
+ * report when it's started with {@code -Dcustomer.startup.timeline=true}.
+ */
+final class StartupTimeline extends BufferingApplicationStartup {
+
+    private final @Nullable ApplicationStartup flightRecorder;
+
+    StartupTimeline(int capacity, boolean flightRecorder) {
+        super(capacity);
+        this.flightRecorder = flightRecorder ? new FlightRecorderApplicationStartup() : null;
+    }
+
+    @Override
+    public StartupStep start(String name) {
+        var step = super.start(name);
+        return (this.flightRecorder != null) ? new FlightRecordedStep(step, this.flightRecorder.start(name)) : step;
+    }
+
+    /**
+     * The {@code limit} ended steps that took longest, not counting the steps nested in
+     * them.
+     */
+    List<Entry> report(int limit) {
+        var events = getBufferedTimeline().getEvents();
+        var nestedNanos = new HashMap<Long, Long>();
+        for (var event : events) {
+            var parentId = event.getStartupStep().getParentId();
+            if (parentId != null) {
+                nestedNanos.merge(parentId, event.getDuration().toNanos(), Long::sum);
+            }
+        }
+        var entries = new ArrayList<Entry>(events.size());
+        for (var event : events) {
+            var step = event.getStartupStep();
+            var tags = new LinkedHashMap<String, String>();
+            step.getTags().forEach(tag -> tags.put(tag.getKey(), tag.getValue()));
+            var durationNanos = event.getDuration().toNanos();
+            entries.add(new Entry(step.getId(), step.getParentId(), step.getName(), tags, durationNanos / 1e6,
+                    (durationNanos - nestedNanos.getOrDefault(step.getId(), 0L)) / 1e6));
+        }
+        entries.sort(Comparator.comparingDouble(Entry::selfMillis).reversed());
+        return entries.subList(0, Math.clamp(limit, 0, entries.size()));
+    }
+
+    record Entry(long id, @Nullable Long parentId, String name, Map<String, String> tags, double totalMillis,
+            double selfMillis) {
+    }
+
+    // the buffered step, which Boot keeps, and the same step in JFR
+    private record FlightRecordedStep(StartupStep step, StartupStep flightRecorderStep) implements StartupStep {
+
+        @Override
+        public String getName() {
+            return this.step.getName();
+        }
+
+        @Override
+        public long getId() {
+            return this.step.getId();
+        }
+
+        @Override
+        public @Nullable Long getParentId() {
+            return this.step.getParentId();
+        }
+
+        @Override
+        public StartupStep tag(String key, String value) {
+            this.step.tag(key, value);
+            this.flightRecorderStep.tag(key, value);
+            return this;
+        }
+
+        @Override
+        public StartupStep tag(String key, Supplier<String> value) {
+            return tag(key, value.get());
+        }
+
+        @Override
+        public Tags getTags() {
+            return this.step.getTags();
+        }
+
+        @Override
+        public void end() {
+            this.flightRecorderStep.end();
+            this.step.end();
+        }
+    }
+}
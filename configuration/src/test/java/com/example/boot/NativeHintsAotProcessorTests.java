@@ -0,0 +1,77 @@
+package com.example.boot;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.generate.ClassNameGenerator;
+import org.springframework.aot.generate.DefaultGenerationContext;
+import org.springframework.aot.generate.InMemoryGeneratedFiles;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationCode;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.boot.autoconfigure.AutoConfigurationPackages;
+import org.springframework.javapoet.ClassName;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class NativeHintsAotProcessorTests {
+
+    private final NativeHintsAotProcessor processor = new NativeHintsAotProcessor();
+
+    @Test
+    void registersTheHintsTheApplicationBeansNeed() {
+        var hints = process("com.example.boot");
+
+        assertThat(RuntimeHintsPredicates.serialization().onType(Cart.class)).accepts(hints);
+        for (var type : new Class<?>[] { Connection.class, Statement.class, PreparedStatement.class,
+                CallableStatement.class, ResultSet.class }) {
+            assertThat(RuntimeHintsPredicates.proxies().forInterfaces(type)).accepts(hints);
+        }
+        assertThat(RuntimeHintsPredicates.resource().forResource("message")).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(Customer.class)
+                .withMemberCategory(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS)).accepts(hints);
+    }
+
+    @Test
+    void onlyLooksIntoTheClassesOfTheAutoConfigurationPackages() {
+        var hints = process("com.example.elsewhere");
+
+        assertThat(RuntimeHintsPredicates.serialization().onType(Cart.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.proxies().forInterfaces(Connection.class)).rejects(hints);
+        assertThat(RuntimeHintsPredicates.resource().forResource("message")).rejects(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(Customer.class)).rejects(hints);
+    }
+
+    @Test
+    void contributesNothingWithoutBeansThatNeedHints() {
+        var beanFactory = new DefaultListableBeanFactory();
+        AutoConfigurationPackages.register(beanFactory, "com.example.boot");
+        beanFactory.registerBeanDefinition("runner", new RootBeanDefinition(CustomerRepositoryRunner.class));
+
+        assertThat(this.processor.processAheadOfTime(beanFactory)).isNull();
+    }
+
+    private RuntimeHints process(String autoConfigurationPackage) {
+        var beanFactory = new DefaultListableBeanFactory();
+        AutoConfigurationPackages.register(beanFactory, autoConfigurationPackage);
+        beanFactory.registerBeanDefinition("application", new RootBeanDefinition(ConfigurationApplication.class));
+        beanFactory.registerBeanDefinition("cart", new RootBeanDefinition(Cart.class));
+        beanFactory.registerBeanDefinition("repository", new RootBeanDefinition(JdbcCustomerRepository.class));
+        beanFactory.registerBeanDefinition("sqlStatistics", new RootBeanDefinition(SqlStatistics.class));
+        var generationContext = new DefaultGenerationContext(
+                new ClassNameGenerator(ClassName.get("com.example", "Test")), new InMemoryGeneratedFiles());
+
+        var contribution = this.processor.processAheadOfTime(beanFactory);
+        assertThat(contribution).isNotNull();
+        contribution.applyTo(generationContext, mock(BeanFactoryInitializationCode.class));
+        return generationContext.getRuntimeHints();
+    }
+}
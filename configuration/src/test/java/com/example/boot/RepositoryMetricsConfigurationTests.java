@@ -0,0 +1,108 @@
+package com.example.boot;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionExecutionListener;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RepositoryMetricsConfigurationTests {
+
+    @Test
+    void timesTheInvocationAroundTheTransactionAndTheCallInsideIt() {
+        try (var context = new AnnotationConfigApplicationContext(TestConfiguration.class)) {
+            var repository = context.getBean(TestRepository.class);
+
+            assertThat(repository.findAll()).containsExactly("a", "b");
+
+            var meterRegistry = context.getBean(MeterRegistry.class);
+            var invocation = meterRegistry.get("repository.invocation").tag("method", "findAll").timer();
+            var call = meterRegistry.get("repository.call").tag("method", "findAll").timer();
+            assertThat(invocation.count()).isOne();
+            assertThat(call.count()).isOne();
+            // beginning the transaction takes 50ms, which only the invocation includes
+            assertThat(invocation.totalTime(TimeUnit.MILLISECONDS) - call.totalTime(TimeUnit.MILLISECONDS))
+                .isGreaterThanOrEqualTo(45);
+            assertThat(TestRepository.calledInTransaction).isTrue();
+            assertThat(meterRegistry.get("repository.rows").tag("method", "findAll").summary().totalAmount())
+                .isEqualTo(2);
+            assertThat(meterRegistry.get("repository.transactions").tag("outcome", "commit").counter().count())
+                .isOne();
+        }
+    }
+
+    @Configuration
+    @Import(RepositoryMetricsConfiguration.class)
+    static class TestConfiguration {
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        SlowToBeginTransactionManager transactionManager(TransactionExecutionListener transactionMetrics) {
+            var transactionManager = new SlowToBeginTransactionManager();
+            transactionManager.addListener(transactionMetrics);
+            return transactionManager;
+        }
+
+        @Bean
+        TestRepository testRepository() {
+            return new TestRepository();
+        }
+    }
+
+    @Repository
+    @Transactional
+    static class TestRepository {
+
+        // static, as the CGLIB proxy doesn't share the target's fields
+        static volatile boolean calledInTransaction;
+
+        List<String> findAll() {
+            calledInTransaction = TransactionSynchronizationManager.isActualTransactionActive();
+            return List.of("a", "b");
+        }
+    }
+
+    static class SlowToBeginTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+            try {
+                Thread.sleep(50);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.boot;
+
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLTimeoutException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+class SqlStatisticsTests {
+
+    @Test
+    void literalsAndListsCollapseIntoOneFingerprint() {
+        assertThat(SqlStatistics.fingerprint("SELECT id, name FROM customer\n  WHERE id IN (1, 2, 3)"))
+                .isEqualTo("select id, name from customer where id in (?)");
+        assertThat(SqlStatistics.fingerprint("select * from customer where name = 'O''Brien' and id > ?"))
+                .isEqualTo("select * from customer where name = ? and id > ?");
+        assertThat(SqlStatistics.fingerprint("select c2 from t1")).isEqualTo("select c2 from t1");
+    }
+
+    @Test
+    void distinctFingerprintsAreBounded() {
+        var statistics = new SqlStatistics(2, Duration.ofHours(1));
+
+        statistics.executed("select * from a", 1_000_000, List.of(), false);
+        statistics.executed("select * from b", 1_000_000, List.of(), false);
+        statistics.executed("select * from c", 1_000_000, List.of(), false);
+        statistics.executed("select * from d", 1_000_000, List.of(), false);
+
+        assertThat(statistics.top(10)).extracting(SqlStatistics.Entry::fingerprint)
+                .containsExactlyInAnyOrder("select * from a", "select * from b", SqlStatistics.OTHER);
+        assertThat(statistics.top(10)).filteredOn(e -> e.fingerprint().equals(SqlStatistics.OTHER))
+                .singleElement().extracting(SqlStatistics.Entry::count).isEqualTo(2L);
+    }
+
+    @Test
+    void measuresStatementsAndCountsTheRowsRead() throws Exception {
+        var connection = mock(Connection.class);
+        var statement = mock(PreparedStatement.class);
+        var resultSet = mock(ResultSet.class);
+        var dataSource = mock(DataSource.class);
+        given(dataSource.getConnection()).willReturn(connection);
+        given(connection.prepareStatement(anyString())).willReturn(statement);
+        given(connection.createArrayOf(any(), any())).willReturn(mock(Array.class));
+        given(statement.executeQuery()).willReturn(resultSet);
+        given(resultSet.next()).willReturn(true, true, false);
+        var statistics = new SqlStatistics(10, Duration.ZERO);
+
+        try (var measured = statistics.measure(dataSource).getConnection()) {
+            var ps = measured.prepareStatement("select * from customer where id = any(?)");
+            ps.setArray(1, measured.createArrayOf("int4", new Object[] { 1, 2 }));
+            try (var rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    // reads each row
+                }
+            }
+        }
+
+        assertThat(statistics.top(1)).singleElement().satisfies(entry -> {
+            assertThat(entry.fingerprint()).isEqualTo("select * from customer where id = any(?)");
+            assertThat(entry.count()).isOne();
+            assertThat(entry.rows()).isEqualTo(2);
+        });
+    }
+
+    @Test
+    void failedStatementsAreRecordedAsErrors() throws Exception {
+        var connection = mock(Connection.class);
+        var statement = mock(PreparedStatement.class);
+        var dataSource = mock(DataSource.class);
+        given(dataSource.getConnection()).willReturn(connection);
+        given(connection.prepareStatement(anyString())).willReturn(statement);
+        given(statement.executeUpdate()).willThrow(new SQLTimeoutException("canceled"));
+        var statistics = new SqlStatistics(10, Duration.ofSeconds(1));
+
+        try (var measured = statistics.measure(dataSource).getConnection()) {
+            var ps = measured.prepareStatement("delete from customer where id = 1");
+            assertThatExceptionOfType(SQLTimeoutException.class).isThrownBy(ps::executeUpdate);
+        }
+
+        assertThat(statistics.top(1)).singleElement().satisfies(entry -> {
+            assertThat(entry.fingerprint()).isEqualTo("delete from customer where id = ?");
+            assertThat(entry.count()).isOne();
+            assertThat(entry.errors()).isOne();
+        });
+    }
+
+    @Test
+    void negativeLimitGivesNoEntries() {
+        var statistics = new SqlStatistics(10, Duration.ofSeconds(1));
+        statistics.executed("select 1", 1_000_000, List.of(), false);
+
+        assertThat(statistics.top(-1)).isEmpty();
+    }
+}
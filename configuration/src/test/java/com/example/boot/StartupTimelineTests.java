@@ -0,0 +1,104 @@
+package com.example.boot;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.condition.ConditionEvaluationReport;
+import org.springframework.boot.autoconfigure.condition.ConditionOutcome;
+import org.springframework.boot.autoconfigure.condition.SpringBootCondition;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.context.annotation.Conditional;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class StartupTimelineTests {
+
+    @Test
+    void reportsTheSlowestBeansByTheirOwnTime() {
+        var timeline = new StartupTimeline(10_000, false);
+        try (var context = new AnnotationConfigApplicationContext()) {
+            context.setApplicationStartup(timeline);
+            context.register(DependsOnSlow.class, Slow.class);
+            context.refresh();
+        }
+        timeline.stopSampling();
+
+        var slowest = timeline.report(1).getFirst();
+        assertThat(slowest.name()).isEqualTo("spring.beans.instantiate");
+        assertThat(slowest.tags()).containsEntry("beanName", "startupTimelineTests.Slow");
+        assertThat(slowest.selfMillis()).isGreaterThanOrEqualTo(50);
+        var dependent = timeline.report(10_000)
+                .stream()
+                .filter(entry -> "startupTimelineTests.DependsOnSlow".equals(entry.tags().get("beanName")))
+                .findFirst()
+                .orElseThrow();
+        assertThat(dependent.totalMillis()).isGreaterThanOrEqualTo(50);
+        assertThat(dependent.selfMillis()).isCloseTo(dependent.totalMillis() - slowest.totalMillis(), within(0.001));
+    }
+
+    @Test
+    void keepsOnlyAsManyStepsAsItHasRoomFor() {
+        var timeline = new StartupTimeline(3, false);
+        try (var context = new AnnotationConfigApplicationContext()) {
+            context.setApplicationStartup(timeline);
+            context.register(Slow.class);
+            context.refresh();
+        }
+        timeline.stopSampling();
+
+        assertThat(timeline.report(10)).hasSize(3);
+        assertThat(timeline.report(-1)).isEmpty();
+    }
+
+    @Test
+    void timesEachConditionClass() {
+        var timeline = new StartupTimeline(10_000, false);
+        ConditionEvaluationReport report;
+        try (var context = new AnnotationConfigApplicationContext()) {
+            context.setApplicationStartup(timeline);
+            context.register(SlowlyConditional.class);
+            context.refresh();
+            report = ConditionEvaluationReport.find(context.getBeanFactory());
+        }
+
+        var slowest = timeline.conditions(report).getFirst();
+        assertThat(slowest.condition()).isEqualTo(SlowCondition.class.getName());
+        assertThat(slowest.evaluations()).isOne();
+        assertThat(slowest.notMatched()).isOne();
+        // only that it was seen, as on a single core the sampler waits for the condition
+        assertThat(slowest.sampledMillis()).isPositive();
+    }
+
+    static class Slow {
+
+        Slow() throws InterruptedException {
+            Thread.sleep(200);
+        }
+    }
+
+    static class DependsOnSlow {
+
+        DependsOnSlow(Slow slow) {
+        }
+    }
+
+    @Configuration
+    @Conditional(SlowCondition.class)
+    static class SlowlyConditional {
+    }
+
+    // spins rather than sleeps, as JFR only samples the threads that are running
+    static class SlowCondition extends SpringBootCondition {
+
+        @Override
+        public ConditionOutcome getMatchOutcome(ConditionContext context, AnnotatedTypeMetadata metadata) {
+            var end = System.nanoTime() + 300_000_000L;
+            while (System.nanoTime() < end) {
+                Thread.onSpinWait();
+            }
+            return ConditionOutcome.noMatch("too slow");
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.framework;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.PayloadApplicationEvent;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.event.ApplicationEventMulticaster;
+import org.springframework.context.event.EventListener;
+import org.springframework.context.support.AbstractApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AsyncApplicationEventMulticasterTests {
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void eventListenersRunOnVirtualThreadsInOrderPerKey() {
+		var listener = new OrderingListener();
+		try (var context = context(4, 16, AsyncApplicationEventMulticaster.Overflow.BLOCK, listener)) {
+			for (var i = 0; i < 100; i++) {
+				context.publishEvent(new Numbered(i % 2 == 0 ? "a" : "b", i));
+			}
+		}
+
+		assertThat(listener.virtual).isTrue();
+		assertThat(listener.received.get("a")).hasSize(50).isSorted();
+		assertThat(listener.received.get("b")).hasSize(50).isSorted();
+	}
+
+	@Test
+	void dropOldestKeepsTheNewestEvents() throws Exception {
+		var listener = new BlockingListener();
+		try (var context = context(1, 1, AsyncApplicationEventMulticaster.Overflow.DROP_OLDEST, listener)) {
+			context.publishEvent(new Numbered("a", 1));
+			listener.started.await();
+			context.publishEvent(new Numbered("a", 2));
+			context.publishEvent(new Numbered("a", 3));
+			listener.release.countDown();
+		}
+
+		assertThat(listener.received).containsExactly(1, 3);
+		assertThat(this.meterRegistry.get("customer.events.dropped").counter().count()).isOne();
+	}
+
+	@Test
+	void eventsPublishedWhileClosingAreStillDelivered() throws Exception {
+		var listener = new CountingListener();
+		var published = new AtomicInteger();
+		var context = context(2, 1024, AsyncApplicationEventMulticaster.Overflow.BLOCK, listener);
+		var multicaster = context.getBean(AsyncApplicationEventMulticaster.class);
+		var publishers = new ArrayList<Thread>();
+		var stop = new AtomicBoolean();
+		// platform threads, as once the multicaster is closed they deliver on their own
+		// thread without ever parking, and on a single core would keep the workers close()
+		// waits for off the one carrier thread
+		for (var i = 0; i < 4; i++) {
+			publishers.add(Thread.ofPlatform().start(() -> {
+				while (!stop.get()) {
+					multicaster.multicastEvent(new PayloadApplicationEvent<>(this, new Numbered("a", 0)));
+					published.incrementAndGet();
+				}
+			}));
+		}
+		Thread.sleep(20);
+		multicaster.close();
+		Thread.sleep(20);
+		stop.set(true);
+		for (var publisher : publishers) {
+			publisher.join();
+		}
+		context.close();
+
+		assertThat(listener.received).hasValue(published.get());
+	}
+
+	@Test
+	void eventsPublishedInlineAreDeliveredBeforePublishingReturns() {
+		var listener = new OrderingListener();
+		try (var context = context(4, 16, AsyncApplicationEventMulticaster.Overflow.DROP_OLDEST, listener)) {
+			var multicaster = context.getBean(AsyncApplicationEventMulticaster.class);
+
+			multicaster.inline(() -> context.publishEvent(new Numbered("a", 1)));
+
+			assertThat(listener.received.get("a")).containsExactly(1);
+			assertThat(listener.virtual).isFalse();
+		}
+	}
+
+	private AnnotationConfigApplicationContext context(int partitions, int queueCapacity,
+			AsyncApplicationEventMulticaster.Overflow overflow, Object listener) {
+		var context = new AnnotationConfigApplicationContext();
+		context.registerBean(AbstractApplicationContext.APPLICATION_EVENT_MULTICASTER_BEAN_NAME,
+				ApplicationEventMulticaster.class, () -> new AsyncApplicationEventMulticaster(context.getBeanFactory(),
+						partitions, queueCapacity, overflow, this.meterRegistry));
+		context.registerBean("listener", Object.class, () -> listener);
+		context.refresh();
+		return context;
+	}
+
+	record Numbered(String key, int n) implements Keyed {
+
+		@Override
+		public Object orderingKey() {
+			return this.key;
+		}
+
+	}
+
+	static class OrderingListener {
+
+		final Map<String, List<Integer>> received = new ConcurrentHashMap<>();
+
+		volatile boolean virtual = true;
+
+		@EventListener
+		void on(Numbered event) {
+			this.virtual &= Thread.currentThread().isVirtual();
+			this.received.computeIfAbsent(event.key(), _ -> new CopyOnWriteArrayList<>()).add(event.n());
+		}
+
+	}
+
+	static class CountingListener {
+
+		final AtomicInteger received = new AtomicInteger();
+
+		@EventListener
+		void on(Numbered event) {
+			this.received.incrementAndGet();
+		}
+
+	}
+
+	static class BlockingListener {
+
+		final List<Integer> received = new ArrayList<>();
+
+		final CountDownLatch started = new CountDownLatch(1);
+
+		final CountDownLatch release = new CountDownLatch(1);
+
+		@EventListener
+		void on(Numbered event) throws InterruptedException {
+			this.started.countDown();
+			this.release.await();
+			this.received.add(event.n());
+		}
+
+	}
+
+}
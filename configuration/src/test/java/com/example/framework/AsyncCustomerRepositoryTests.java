@@ -0,0 +1,79 @@
+package com.example.framework;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+
+class AsyncCustomerRepositoryTests {
+
+	private final CustomerRepository delegate = mock(CustomerRepository.class);
+
+	private final AsyncCustomerRepository repository = new AsyncCustomerRepository(this.delegate, 2, 4);
+
+	@AfterEach
+	void close() {
+		this.repository.close();
+	}
+
+	@Test
+	void chunksAreMergedInInputOrder() {
+		given(this.delegate.findById(List.of(5, 3))).willReturn(List.of(customer(3), customer(5)));
+		given(this.delegate.findById(List.of(9, 1))).willReturn(List.of(customer(1)));
+		given(this.delegate.findById(List.of(7))).willReturn(List.of(customer(7)));
+
+		var customers = this.repository.findByIdAsync(List.of(5, 3, 9, 1, 7, 3)).join();
+
+		assertThat(customers).containsExactly(customer(5), customer(3), customer(1), customer(7));
+	}
+
+	@Test
+	void failedChunkFailsTheLookup() {
+		given(this.delegate.findById(List.of(1, 2))).willReturn(List.of(customer(1), customer(2)));
+		given(this.delegate.findById(List.of(3))).willThrow(new IllegalStateException("boom"));
+
+		assertThatThrownBy(() -> this.repository.findByIdAsync(List.of(1, 2, 3)).join())
+			.isInstanceOf(CompletionException.class)
+			.hasRootCauseMessage("boom");
+	}
+
+	@Test
+	void failedChunkCancelsTheChunksStillRunning() throws InterruptedException {
+		var started = new CountDownLatch(1);
+		var interrupted = new CountDownLatch(1);
+		given(this.delegate.findById(List.of(1, 2))).willAnswer(_ -> {
+			started.countDown();
+			try {
+				new CountDownLatch(1).await();
+			}
+			catch (InterruptedException e) {
+				interrupted.countDown();
+			}
+			return List.of();
+		});
+		// fails once the other chunk is running, so there's a lookup to cancel
+		given(this.delegate.findById(List.of(3))).willAnswer(_ -> {
+			started.await();
+			throw new IllegalStateException("boom");
+		});
+
+		assertThatThrownBy(() -> this.repository.findByIdAsync(List.of(1, 2, 3)).get(5, TimeUnit.SECONDS))
+			.isInstanceOf(ExecutionException.class)
+			.hasRootCauseMessage("boom");
+		assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+	}
+
+	private static Customer customer(int id) {
+		return new Customer(id, "customer " + id);
+	}
+
+}
@@ -0,0 +1,64 @@
+package com.example.framework;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What it costs to refresh and close the context of {@link CustomerJavaConfiguration}
+ * with the singletons created one after another, and by {@link ParallelBeanFactory} on
+ * virtual threads or on {@code parallelism} platform threads. The pool is turned off so
+ * no connections are opened; the repository still tries one, to find the database's
+ * error codes.
+ * <p>
+ * Run {@link #main} from the IDE, or after {@code mvn test-compile} with the test
+ * classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BootstrapBenchmark {
+
+	// -1 for one after another, 0 for virtual threads
+	@Param({ "-1", "0", "4" })
+	public int parallelism;
+
+	@Benchmark
+	public int refresh() {
+		var beanFactory = (this.parallelism < 0) ? new DefaultListableBeanFactory()
+				: new ParallelBeanFactory(this.parallelism, Duration.ofSeconds(60));
+		try (var context = new AnnotationConfigApplicationContext(beanFactory)) {
+			context.getEnvironment()
+				.getPropertySources()
+				.addFirst(new MapPropertySource("benchmark", Map.of("customer.datasource.pool.enabled", "false")));
+			context.register(CustomerJavaConfiguration.class);
+			context.refresh();
+			return context.getBeanDefinitionCount();
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(BootstrapBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
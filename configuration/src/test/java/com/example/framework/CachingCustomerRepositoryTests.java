@@ -0,0 +1,98 @@
+package com.example.framework;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class CachingCustomerRepositoryTests {
+
+	private final CustomerRepository delegate = mock(CustomerRepository.class);
+
+	private final AtomicLong now = new AtomicLong(1);
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	@Test
+	void batchLookupOnlyFetchesMissingIds() {
+		given(this.delegate.findById(List.of(1, 2))).willReturn(List.of(customer(1), customer(2)));
+		given(this.delegate.findById(List.of(3))).willReturn(List.of(customer(3)));
+		var cache = new CachingCustomerRepository(this.delegate, 10, Duration.ZERO, this.now::get, this.meterRegistry);
+
+		cache.findById(List.of(1, 2));
+		var customers = cache.findById(List.of(1, 2, 3));
+
+		assertThat(customers).containsExactlyInAnyOrder(customer(1), customer(2), customer(3));
+		verify(this.delegate).findById(List.of(3));
+		assertThat(count("customer.cache.hits")).isEqualTo(2);
+		assertThat(count("customer.cache.misses")).isEqualTo(3);
+		assertThat(count("customer.cache.evictions")).isZero();
+		assertThat(this.meterRegistry.get("customer.cache.size").gauge().value()).isEqualTo(3);
+	}
+
+	@Test
+	void saveAllPopulatesTheCache() {
+		given(this.delegate.saveAll(any())).willReturn(List.of(customer(7)));
+		var cache = new CachingCustomerRepository(this.delegate, 10, Duration.ZERO, this.now::get, this.meterRegistry);
+
+		cache.saveAll(List.of(new Customer(null, "seven")));
+
+		assertThat(cache.findById(List.of(7))).containsExactly(customer(7));
+		verify(this.delegate, never()).findById(any());
+	}
+
+	@Test
+	void leastRecentlyUsedEntryIsEvicted() {
+		given(this.delegate.findById(any())).willAnswer(invocation -> {
+			var customers = new ArrayList<Customer>();
+			invocation.<Iterable<Integer>>getArgument(0).forEach(id -> customers.add(customer(id)));
+			return customers;
+		});
+		var cache = new CachingCustomerRepository(this.delegate, 2, Duration.ZERO, this.now::get, this.meterRegistry);
+
+		cache.findById(List.of(1, 2));
+		cache.findById(List.of(1));
+		cache.findById(List.of(3));
+		cache.findById(List.of(1));
+
+		assertThat(count("customer.cache.evictions")).isEqualTo(1);
+		assertThat(this.meterRegistry.get("customer.cache.size").gauge().value()).isEqualTo(2);
+		verify(this.delegate, never()).findById(List.of(1));
+	}
+
+	@Test
+	void expiredEntriesAreReloaded() {
+		given(this.delegate.findById(List.of(1))).willReturn(List.of(customer(1)));
+		var cache = new CachingCustomerRepository(this.delegate, 10, Duration.ofNanos(100), this.now::get,
+				this.meterRegistry);
+
+		cache.findById(List.of(1));
+		this.now.addAndGet(50);
+		cache.findById(List.of(1));
+		this.now.addAndGet(50);
+		cache.findById(List.of(1));
+
+		assertThat(count("customer.cache.hits")).isEqualTo(1);
+		assertThat(count("customer.cache.misses")).isEqualTo(2);
+		assertThat(count("customer.cache.evictions")).isEqualTo(1);
+	}
+
+	private double count(String name) {
+		return this.meterRegistry.get(name).functionCounter().count();
+	}
+
+	private static Customer customer(int id) {
+		return new Customer(id, "customer " + id);
+	}
+
+}
@@ -0,0 +1,101 @@
+package com.example.framework;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class CoalescingCustomerRepositoryTests {
+
+	private final CustomerRepository delegate = mock(CustomerRepository.class);
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final CoalescingCustomerRepository repository = new CoalescingCustomerRepository(this.delegate, 3,
+			Duration.ofSeconds(10), this.meterRegistry);
+
+	@AfterEach
+	void close() throws Exception {
+		this.repository.close();
+	}
+
+	@Test
+	void concurrentCallersShareOneWriteAndGetTheirOwnCustomers() {
+		var ids = new AtomicInteger();
+		given(this.delegate.saveAll(any())).willAnswer(invocation -> {
+			var saved = new ArrayList<Customer>();
+			invocation.<Collection<Customer>>getArgument(0)
+				.forEach(c -> saved.add(new Customer(ids.incrementAndGet(), c.name())));
+			return saved;
+		});
+
+		try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			var futures = new ArrayList<CompletableFuture<Collection<Customer>>>();
+			for (var name : List.of("a", "b", "c")) {
+				futures.add(CompletableFuture.supplyAsync(
+						() -> this.repository.saveAll(List.of(new Customer(null, name))), executor));
+			}
+			for (var i = 0; i < futures.size(); i++) {
+				var saved = futures.get(i).join();
+				assertThat(saved).singleElement().extracting(Customer::name).isEqualTo(List.of("a", "b", "c").get(i));
+			}
+		}
+
+		verify(this.delegate, times(1)).saveAll(any());
+		assertThat(this.meterRegistry.get("customer.coalescer.batch.size").summary().max()).isEqualTo(3);
+	}
+
+	@Test
+	void batchFailureIsReportedToTheCaller() {
+		given(this.delegate.saveAll(any())).willThrow(new IllegalStateException("boom"));
+
+		assertThatIllegalStateException()
+			.isThrownBy(() -> this.repository.saveAll(List.of(new Customer(null, "a"), new Customer(null, "b"),
+					new Customer(null, "c"))))
+			.withMessage("boom");
+	}
+
+	@Test
+	void callersRacingCloseAreAnsweredOneWayOrTheOther() throws Exception {
+		given(this.delegate.saveAll(any())).willAnswer(invocation -> invocation.getArgument(0));
+		var repository = new CoalescingCustomerRepository(this.delegate, 3, Duration.ofMillis(1), null);
+		var callers = new ArrayList<CompletableFuture<Void>>();
+		for (var i = 0; i < 16; i++) {
+			// not an executor that waits for them on close, as a stranded caller never returns
+			callers.add(CompletableFuture.runAsync(() -> {
+				// until the coalescer refuses
+				while (true) {
+					repository.saveAll(List.of(new Customer(null, "a")));
+				}
+			}, Thread.ofVirtual()::start));
+		}
+		Thread.sleep(50);
+		repository.close();
+
+		for (var caller : callers) {
+			assertThatExceptionOfType(ExecutionException.class).isThrownBy(() -> caller.get(5, TimeUnit.SECONDS))
+				.havingCause()
+				.isInstanceOf(IllegalStateException.class)
+				.withMessage("the coalescer has been closed");
+		}
+	}
+
+}
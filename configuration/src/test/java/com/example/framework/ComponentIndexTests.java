@@ -0,0 +1,118 @@
+package com.example.framework;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.index.CandidateComponentsIndexLoader;
+import org.springframework.context.index.processor.CandidateComponentsIndexer;
+import org.springframework.stereotype.Component;
+
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ComponentIndexTests {
+
+	@TempDir
+	Path classes;
+
+	@TempDir
+	Path sources;
+
+	private URLClassLoader classLoader;
+
+	@BeforeEach
+	void classLoader() throws IOException {
+		this.classLoader = new URLClassLoader(new URL[] { this.classes.toUri().toURL() }, null);
+	}
+
+	@AfterEach
+	void close() throws IOException {
+		this.classLoader.close();
+	}
+
+	@Test
+	void anIndexWhoseClassesAllExistIsRead() throws IOException {
+		classFile("MyService");
+		index("com.example.framework.MyService");
+
+		assertThat(ComponentIndex.verify(this.classLoader)).isTrue();
+		assertThat(CandidateComponentsIndexLoader.loadIndex(this.classLoader)
+			.getCandidateTypes("com.example.framework", Component.class.getName()))
+			.containsExactly("com.example.framework.MyService");
+	}
+
+	// javac writes the index before the class files
+	@Test
+	void anIndexWrittenByTheIndexerIsRead() throws Exception {
+		var source = this.sources.resolve("com/example/indexed/IndexedService.java");
+		Files.createDirectories(source.getParent());
+		Files.writeString(source, """
+				package com.example.indexed;
+
+				@org.springframework.stereotype.Service
+				class IndexedService {
+				}
+				""");
+		var compiler = ToolProvider.getSystemJavaCompiler();
+		try (var fileManager = compiler.getStandardFileManager(null, null, null)) {
+			fileManager.setLocation(StandardLocation.CLASS_OUTPUT, List.of(this.classes.toFile()));
+			fileManager.setLocation(StandardLocation.CLASS_PATH,
+					List.of(Path.of(Component.class.getProtectionDomain().getCodeSource().getLocation().toURI())
+						.toFile()));
+			var task = compiler.getTask(null, fileManager, null, null, null,
+					fileManager.getJavaFileObjects(source.toFile()));
+			task.setProcessors(List.of(new CandidateComponentsIndexer()));
+			assertThat(task.call()).isTrue();
+		}
+
+		assertThat(ComponentIndex.verify(this.classLoader)).isTrue();
+		assertThat(CandidateComponentsIndexLoader.loadIndex(this.classLoader)
+			.getCandidateTypes("com.example.indexed", Component.class.getName()))
+			.containsExactly("com.example.indexed.IndexedService");
+	}
+
+	@Test
+	void anIndexedClassThatIsGoneMeansScanning() throws IOException {
+		classFile("MyService");
+		index("com.example.framework.MyService", "com.example.framework.Removed");
+
+		assertThat(ComponentIndex.verify(this.classLoader)).isFalse();
+		var index = CandidateComponentsIndexLoader.loadIndex(this.classLoader);
+		assertThat(index).isNotNull();
+		assertThat(index.hasScannedPackage("com.example.framework")).isFalse();
+	}
+
+	@Test
+	void withoutAnIndexTheScannerScans() throws IOException {
+		classFile("MyService");
+
+		assertThat(ComponentIndex.verify(this.classLoader)).isFalse();
+		assertThat(CandidateComponentsIndexLoader.loadIndex(this.classLoader)).isNull();
+	}
+
+	private void classFile(String name) throws IOException {
+		var file = this.classes.resolve("com/example/framework/" + name + ".class");
+		Files.createDirectories(file.getParent());
+		Files.write(file, new byte[0]);
+	}
+
+	private void index(String... types) throws IOException {
+		var file = this.classes.resolve(CandidateComponentsIndexLoader.COMPONENTS_RESOURCE_LOCATION);
+		Files.createDirectories(file.getParent());
+		var content = new StringBuilder();
+		for (var type : types) {
+			content.append(type).append('=').append(Component.class.getName()).append('\n');
+		}
+		Files.writeString(file, content);
+	}
+
+}
@@ -0,0 +1,41 @@
+package com.example.framework;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.AbstractBeanDefinition;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.support.AbstractApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CustomerBeanRegistrarTests {
+
+	@Test
+	void registersTheCustomerStackWithSuppliersAndWithoutScanning() {
+		try (var context = new AnnotationConfigApplicationContext()) {
+			context.getEnvironment()
+				.getPropertySources()
+				.addFirst(new MapPropertySource("test", Map.of("customer.datasource.pool.enabled", "false")));
+			context.register(CustomerRegistrarConfiguration.class);
+			context.refresh();
+
+			assertThat(context.getBean(CustomerRepositoryRunner.class)).isNotNull();
+			assertThat(context.getBean(DataSource.class)).isInstanceOf(DriverManagerDataSource.class);
+			assertThat(context.getBean(AbstractApplicationContext.APPLICATION_EVENT_MULTICASTER_BEAN_NAME))
+				.isInstanceOf(IndexedApplicationEventMulticaster.class);
+			assertThat(context.getBeanNamesForType(MyLifecycle.class)).isEmpty();
+			assertThat(context.getBeanNamesForType(EventProducer.class)).isEmpty();
+			for (var beanName : new String[] { "dataSource", "jdbcClient", "platformTransactionManager",
+					"customerRepository", "fooRunner" }) {
+				var definition = (AbstractBeanDefinition) context.getBeanFactory().getBeanDefinition(beanName);
+				assertThat(definition.getInstanceSupplier()).as(beanName).isNotNull();
+				assertThat(definition.getFactoryMethodName()).as(beanName).isNull();
+			}
+		}
+	}
+
+}
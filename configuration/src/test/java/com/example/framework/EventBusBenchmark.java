@@ -0,0 +1,91 @@
+package com.example.framework;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.event.EventListener;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What it costs to publish a {@link UserAuthenticatedEvent} through the context's
+ * {@link org.springframework.context.ApplicationEventPublisher}, which calls the listener
+ * on the publisher's thread, against {@link RingBufferEventBus}, which hands it to the
+ * listener's own thread. Both deliver to the same {@code @EventListener}, which only
+ * counts. The ring is small, so the bus's figures include waiting for the listener to
+ * keep up rather than just filling the ring.
+ * <p>
+ * Run {@link #main} from the IDE, or after {@code mvn test-compile} with the test
+ * classpath. Add {@code -t 4} to publish from several threads and {@code -prof gc} to see
+ * the allocation per event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EventBusBenchmark {
+
+	private final UserAuthenticatedEvent event = new UserAuthenticatedEvent(Instant.EPOCH, "jlong");
+
+	private AnnotationConfigApplicationContext context;
+
+	private RingBufferEventBus<UserAuthenticatedEvent> bus;
+
+	@Setup
+	@SuppressWarnings("unchecked")
+	public void setup() {
+		this.context = new AnnotationConfigApplicationContext();
+		this.context.registerBean(CountingListener.class);
+		this.context.registerBean(RingBufferEventBus.class,
+				() -> new RingBufferEventBus<>(UserAuthenticatedEvent.class, 1024, null));
+		this.context.refresh();
+		this.bus = this.context.getBean(RingBufferEventBus.class);
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.context.close();
+	}
+
+	@Benchmark
+	public void applicationEventPublisher() {
+		this.context.publishEvent(this.event);
+	}
+
+	@Benchmark
+	public void ringBuffer() {
+		this.bus.publish(this.event);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(EventBusBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	static class CountingListener {
+
+		private final LongAdder count = new LongAdder();
+
+		@EventListener
+		void onAuthentication(UserAuthenticatedEvent event) {
+			this.count.increment();
+		}
+
+	}
+
+}
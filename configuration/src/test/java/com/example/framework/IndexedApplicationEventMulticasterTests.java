@@ -0,0 +1,112 @@
+package com.example.framework;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.PayloadApplicationEvent;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.context.support.AbstractApplicationContext;
+import org.springframework.core.annotation.Order;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IndexedApplicationEventMulticasterTests {
+
+	private final List<String> calls = new CopyOnWriteArrayList<>();
+
+	@Test
+	void dispatchesToTheIndexedListenersInOrder() {
+		try (var context = context()) {
+			context.registerBean(First.class, () -> new First(this.calls));
+			context.registerBean(Second.class, () -> new Second(this.calls));
+			context.refresh();
+			var event = new PayloadApplicationEvent<>(context, new UserAuthenticatedEvent(Instant.EPOCH, "jlong"));
+			var multicaster = context.getBean(IndexedApplicationEventMulticaster.class);
+
+			context.publishEvent(event.getPayload());
+
+			assertThat(this.calls).containsExactly("first jlong", "second jlong");
+			assertThat(multicaster.listeners(event, null)).hasSize(2)
+				.isSameAs(multicaster.listeners(event, event.getResolvableType()));
+		}
+	}
+
+	@Test
+	void addingAListenerRebuildsTheIndex() {
+		try (var context = context()) {
+			context.registerBean(First.class, () -> new First(this.calls));
+			context.refresh();
+			context.publishEvent(new UserAuthenticatedEvent(Instant.EPOCH, "jlong"));
+
+			ApplicationListener<PayloadApplicationEvent<UserAuthenticatedEvent>> added = (event) -> this.calls
+				.add("added " + event.getPayload().username());
+			context.addApplicationListener(added);
+			context.publishEvent(new UserAuthenticatedEvent(Instant.EPOCH, "jhoeller"));
+
+			assertThat(this.calls).containsExactly("first jlong", "first jhoeller", "added jhoeller");
+		}
+	}
+
+	@Test
+	void prototypeListenerBeansAreResolvedOnEveryPublish() {
+		try (var context = context()) {
+			context.registerBean(Prototype.class, () -> new Prototype(this.calls),
+					definition -> definition.setScope(BeanDefinition.SCOPE_PROTOTYPE));
+			context.refresh();
+			context.publishEvent(new UserAuthenticatedEvent(Instant.EPOCH, "jlong"));
+			context.publishEvent(new UserAuthenticatedEvent(Instant.EPOCH, "jhoeller"));
+
+			assertThat(this.calls).hasSize(2).doesNotHaveDuplicates();
+		}
+	}
+
+	private static AnnotationConfigApplicationContext context() {
+		var context = new AnnotationConfigApplicationContext();
+		context.registerBean(AbstractApplicationContext.APPLICATION_EVENT_MULTICASTER_BEAN_NAME,
+				IndexedApplicationEventMulticaster.class,
+				() -> new IndexedApplicationEventMulticaster(context.getBeanFactory()));
+		return context;
+	}
+
+	record First(List<String> calls) {
+
+		@Order(1)
+		@EventListener
+		void on(UserAuthenticatedEvent event) {
+			this.calls.add("first " + event.username());
+		}
+
+	}
+
+	record Second(List<String> calls) {
+
+		@Order(2)
+		@EventListener
+		void on(UserAuthenticatedEvent event) {
+			this.calls.add("second " + event.username());
+		}
+
+	}
+
+	// each instance records its own identity
+	static class Prototype implements ApplicationListener<PayloadApplicationEvent<UserAuthenticatedEvent>> {
+
+		private final List<String> calls;
+
+		Prototype(List<String> calls) {
+			this.calls = calls;
+		}
+
+		@Override
+		public void onApplicationEvent(PayloadApplicationEvent<UserAuthenticatedEvent> event) {
+			this.calls.add(String.valueOf(System.identityHashCode(this)));
+		}
+
+	}
+
+}
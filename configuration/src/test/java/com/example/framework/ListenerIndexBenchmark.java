@@ -0,0 +1,149 @@
+package com.example.framework;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.PayloadApplicationEvent;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.event.ApplicationEventMulticaster;
+import org.springframework.context.event.EventListener;
+import org.springframework.context.event.SimpleApplicationEventMulticaster;
+import org.springframework.context.support.AbstractApplicationContext;
+import org.springframework.core.ResolvableType;
+
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * What it costs to dispatch a {@link UserAuthenticatedEvent} to its one listener as the
+ * number of other listeners in the context grows, with Spring's multicaster and with
+ * {@link IndexedApplicationEventMulticaster}. Half the other listeners are
+ * {@code @EventListener} methods and half are {@link ApplicationListener} beans, all for
+ * another event. The event is built once, so only the dispatch is measured, not the
+ * wrapping {@code publishEvent} does.
+ * <p>
+ * Run {@link #main} from the IDE, or after {@code mvn test-compile} with the test
+ * classpath. Add {@code -prof gc} to see the allocation per event.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListenerIndexBenchmark {
+
+	@Param({ "0", "10", "100", "500" })
+	public int otherListeners;
+
+	private AnnotationConfigApplicationContext simple;
+
+	private AnnotationConfigApplicationContext indexed;
+
+	private ApplicationEventMulticaster simpleMulticaster;
+
+	private ApplicationEventMulticaster indexedMulticaster;
+
+	private PayloadApplicationEvent<UserAuthenticatedEvent> event;
+
+	private ResolvableType eventType;
+
+	@Setup
+	public void setup() {
+		this.simple = context(SimpleApplicationEventMulticaster::new);
+		this.indexed = context(IndexedApplicationEventMulticaster::new);
+		this.simpleMulticaster = multicaster(this.simple);
+		this.indexedMulticaster = multicaster(this.indexed);
+		this.event = new PayloadApplicationEvent<>(this, new UserAuthenticatedEvent(Instant.EPOCH, "jlong"));
+		this.eventType = this.event.getResolvableType();
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.simple.close();
+		this.indexed.close();
+	}
+
+	@Benchmark
+	public void simple() {
+		this.simpleMulticaster.multicastEvent(this.event, this.eventType);
+	}
+
+	@Benchmark
+	public void indexed() {
+		this.indexedMulticaster.multicastEvent(this.event, this.eventType);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(ListenerIndexBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	private AnnotationConfigApplicationContext context(
+			Function<BeanFactory, ApplicationEventMulticaster> multicaster) {
+		var context = new AnnotationConfigApplicationContext();
+		context.registerBean(AbstractApplicationContext.APPLICATION_EVENT_MULTICASTER_BEAN_NAME,
+				ApplicationEventMulticaster.class, () -> multicaster.apply(context.getBeanFactory()));
+		context.registerBean(AuthenticationListener.class);
+		for (var i = 0; i < this.otherListeners; i++) {
+			if (i % 2 == 0) {
+				context.registerBean("other" + i, OtherEventListener.class);
+			}
+			else {
+				context.registerBean("other" + i, OtherApplicationListener.class);
+			}
+		}
+		context.refresh();
+		return context;
+	}
+
+	private static ApplicationEventMulticaster multicaster(AbstractApplicationContext context) {
+		return context.getBean(AbstractApplicationContext.APPLICATION_EVENT_MULTICASTER_BEAN_NAME,
+				ApplicationEventMulticaster.class);
+	}
+
+	record OtherEvent(String name) {
+	}
+
+	static class AuthenticationListener {
+
+		private long count;
+
+		@EventListener
+		void onAuthentication(UserAuthenticatedEvent event) {
+			this.count++;
+		}
+
+	}
+
+	static class OtherEventListener {
+
+		@EventListener
+		void onOther(OtherEvent event) {
+		}
+
+	}
+
+	static class OtherApplicationListener implements ApplicationListener<PayloadApplicationEvent<OtherEvent>> {
+
+		@Override
+		public void onApplicationEvent(PayloadApplicationEvent<OtherEvent> event) {
+		}
+
+	}
+
+}
@@ -0,0 +1,99 @@
+package com.example.framework;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class OutboxDrainerTests {
+
+	private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+	private final TransactionStatus status = mock(TransactionStatus.class);
+
+	private final Outbox outbox = mock(Outbox.class);
+
+	private final ApplicationEventPublisher publisher = mock(ApplicationEventPublisher.class);
+
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+	private final OutboxDrainer drainer = new OutboxDrainer(this.outbox,
+			new TransactionTemplate(this.transactionManager), this.publisher, 10, Duration.ofMillis(100), 1,
+			this.meterRegistry);
+
+	private final List<Outbox.Entry> entries = List.of(
+			new Outbox.Entry(1, new CustomerSavedEvent(1, "a"), Instant.now().minusSeconds(1)),
+			new Outbox.Entry(2, new CustomerSavedEvent(2, "b"), Instant.now()));
+
+	@Test
+	void publishesTheBatchInOrderAndDeletesItBeforeCommitting() {
+		given(this.transactionManager.getTransaction(any())).willReturn(this.status);
+		given(this.outbox.claim(10)).willReturn(this.entries);
+
+		assertThat(this.drainer.drain()).isEqualTo(2);
+
+		var inOrder = inOrder(this.publisher, this.outbox, this.transactionManager);
+		inOrder.verify(this.publisher).publishEvent((Object) new CustomerSavedEvent(1, "a"));
+		inOrder.verify(this.publisher).publishEvent((Object) new CustomerSavedEvent(2, "b"));
+		inOrder.verify(this.outbox).delete(this.entries);
+		inOrder.verify(this.transactionManager).commit(this.status);
+		assertThat(this.meterRegistry.get("customer.outbox.lag").timer().count()).isEqualTo(2);
+		assertThat(this.meterRegistry.get("customer.outbox.published").counter().count()).isEqualTo(2);
+	}
+
+	@Test
+	void aFailingListenerRollsTheBatchBack() {
+		given(this.transactionManager.getTransaction(any())).willReturn(this.status);
+		given(this.outbox.claim(10)).willReturn(this.entries);
+		willThrow(new IllegalStateException("listener failed")).given(this.publisher)
+			.publishEvent((Object) new CustomerSavedEvent(2, "b"));
+
+		assertThatIllegalStateException().isThrownBy(this.drainer::drain);
+
+		verify(this.outbox, never()).delete(any());
+		verify(this.transactionManager).rollback(this.status);
+		assertThat(this.meterRegistry.get("customer.outbox.published").counter().count()).isZero();
+	}
+
+	@Test
+	void anEmptyOutboxDrainsNothing() {
+		given(this.transactionManager.getTransaction(any())).willReturn(this.status);
+		given(this.outbox.claim(10)).willReturn(List.of());
+
+		assertThat(this.drainer.drain()).isZero();
+
+		verify(this.outbox, never()).delete(any());
+		verify(this.publisher, never()).publishEvent(any(Object.class));
+	}
+
+	@Test
+	void gaugesTheAgeOfTheOldestEventStillInTheOutbox() {
+		var age = this.meterRegistry.get("customer.outbox.oldest.age").gauge();
+		assertThat(age.value()).isZero();
+
+		given(this.outbox.oldest()).willReturn(Instant.now().minusSeconds(60));
+		this.drainer.refreshOldest();
+		assertThat(age.value()).isBetween(60.0, 120.0);
+
+		given(this.outbox.oldest()).willReturn(null);
+		this.drainer.refreshOldest();
+		assertThat(age.value()).isZero();
+	}
+
+}
@@ -0,0 +1,44 @@
+package com.example.framework;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.simple.JdbcClient;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThatIllegalArgumentException;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class OutboxTests {
+
+	private final JdbcClient jdbcClient = mock(JdbcClient.class);
+
+	private final Outbox outbox = new Outbox(this.jdbcClient, JsonMapper.shared(), List.of(CustomerSavedEvent.class));
+
+	@AfterEach
+	void clearTransaction() {
+		TransactionSynchronizationManager.setActualTransactionActive(false);
+	}
+
+	@Test
+	void eventsCanOnlyBeAppendedInATransaction() {
+		assertThatIllegalStateException()
+			.isThrownBy(() -> this.outbox.appendAll(List.of(new CustomerSavedEvent(1, "a"))));
+		verifyNoInteractions(this.jdbcClient);
+	}
+
+	@Test
+	void onlyTheGivenEventTypesCanBeAppended() {
+		TransactionSynchronizationManager.setActualTransactionActive(true);
+
+		assertThatIllegalArgumentException()
+			.isThrownBy(() -> this.outbox.appendAll(List.of(new UserAuthenticatedEvent(Instant.EPOCH, "jlong"))));
+		verifyNoInteractions(this.jdbcClient);
+	}
+
+}
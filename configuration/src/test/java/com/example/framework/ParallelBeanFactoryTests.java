@@ -0,0 +1,145 @@
+package com.example.framework;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.BeanCreationException;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+
+class ParallelBeanFactoryTests {
+
+	@Test
+	void independentBeansAreCreatedConcurrently() {
+		try (var context = context(Duration.ofSeconds(10), Slow.class, OtherSlow.class)) {
+			// each waits for the other to have started
+			var slow = context.getBean("parallelBeanFactoryTests.Slow", Slow.class);
+			assertThat(slow.thread).isNotSameAs(context.getBean(OtherSlow.class).thread);
+		}
+	}
+
+	@Test
+	void dependenciesAreCreatedAndInitializedFirst() {
+		try (var context = context(Duration.ofSeconds(10), Dependent.class, Dependency.class, Callback.class)) {
+			assertThat(context.getBean(Dependent.class).dependencyInitialized).isTrue();
+			assertThat(context.getBean(Callback.class).singletons).isTrue();
+		}
+	}
+
+	@Test
+	void beansThatDependOnEachOtherAreCreatedOnOneThread() {
+		try (var context = context(Duration.ofSeconds(10), Left.class, Right.class)) {
+			assertThat(context.getBean(Left.class).right).isSameAs(context.getBean(Right.class));
+			assertThat(context.getBean(Left.class).thread).isSameAs(context.getBean(Right.class).thread);
+		}
+	}
+
+	@Test
+	void aBeanThatIsStuckFailsTheRefreshWithWhereItIsStuck() {
+		assertThatExceptionOfType(BeanCreationException.class)
+			.isThrownBy(() -> context(Duration.ofMillis(200), Stuck.class))
+			.withMessageContaining("parallelBeanFactoryTests.Stuck on ")
+			.withMessageContaining("bootstrap-")
+			.withMessageContaining("Stuck.<init>");
+	}
+
+	private static AnnotationConfigApplicationContext context(Duration timeout, Class<?>... beanClasses) {
+		var context = new AnnotationConfigApplicationContext(new ParallelBeanFactory(0, timeout));
+		context.register(beanClasses);
+		context.refresh();
+		return context;
+	}
+
+	private static final CountDownLatch started = new CountDownLatch(2);
+
+	static class Slow {
+
+		final Thread thread = Thread.currentThread();
+
+		Slow() throws InterruptedException {
+			started.countDown();
+			started.await();
+		}
+
+	}
+
+	static class OtherSlow extends Slow {
+
+		OtherSlow() throws InterruptedException {
+		}
+
+	}
+
+	static class Dependency implements InitializingBean {
+
+		volatile boolean initialized;
+
+		@Override
+		public void afterPropertiesSet() {
+			this.initialized = true;
+		}
+
+	}
+
+	static class Dependent {
+
+		final boolean dependencyInitialized;
+
+		Dependent(Dependency dependency) {
+			this.dependencyInitialized = dependency.initialized;
+		}
+
+	}
+
+	static class Callback implements SmartInitializingSingleton {
+
+		@Autowired
+		Dependent dependent;
+
+		boolean singletons;
+
+		@Override
+		public void afterSingletonsInstantiated() {
+			this.singletons = this.dependent != null;
+		}
+
+	}
+
+	static class Left {
+
+		final Thread thread = Thread.currentThread();
+
+		@Autowired
+		Right right;
+
+	}
+
+	static class Right {
+
+		final Thread thread = Thread.currentThread();
+
+		@Autowired
+		Left left;
+
+	}
+
+	static class Stuck {
+
+		Stuck() {
+			try {
+				new CountDownLatch(1).await();
+			}
+			catch (InterruptedException ex) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+	}
+
+}
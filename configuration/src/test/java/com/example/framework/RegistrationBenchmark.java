@@ -0,0 +1,60 @@
+package com.example.framework;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What it costs to refresh and close the context with the customer stack registered by
+ * {@link CustomerJavaConfiguration}, scanning the package and calling its {@code @Bean}
+ * methods through the CGLIB subclass, and by {@link CustomerBeanRegistrar}. The pool is
+ * turned off so no connections are opened; the repository still tries one, to find the
+ * database's error codes, and that fails the same way in both.
+ * <p>
+ * Run {@link #main} from the IDE, or after {@code mvn test-compile} with the test
+ * classpath. Add {@code -prof gc} to see the allocation per refresh.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RegistrationBenchmark {
+
+	@Param({ "scan", "registrar" })
+	public String registration;
+
+	@Benchmark
+	public int refresh() {
+		try (var context = new AnnotationConfigApplicationContext()) {
+			context.getEnvironment()
+				.getPropertySources()
+				.addFirst(new MapPropertySource("benchmark", Map.of("customer.datasource.pool.enabled", "false")));
+			context.register(this.registration.equals("scan") ? CustomerJavaConfiguration.class
+					: CustomerRegistrarConfiguration.class);
+			context.refresh();
+			return context.getBeanDefinitionCount();
+		}
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(RegistrationBenchmark.class.getSimpleName()).build()).run();
+	}
+
+}
@@ -0,0 +1,90 @@
+package com.example.framework;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class ReplicaRoutingDataSourceTests {
+
+	private final DataSource primary = mock(DataSource.class);
+
+	private final DataSource first = mock(DataSource.class);
+
+	private final DataSource second = mock(DataSource.class);
+
+	private final Connection primaryConnection = mock(Connection.class);
+
+	private final Connection firstConnection = mock(Connection.class);
+
+	private final Connection secondConnection = mock(Connection.class);
+
+	@Test
+	void roundRobinAlternatesBetweenReplicas() throws Exception {
+		given(this.first.getConnection()).willReturn(this.firstConnection);
+		given(this.second.getConnection()).willReturn(this.secondConnection);
+		var router = router(Duration.ofSeconds(5));
+
+		assertThat(List.of(router.getConnection(), router.getConnection(), router.getConnection()))
+			.containsExactly(this.firstConnection, this.secondConnection, this.firstConnection);
+	}
+
+	@Test
+	void failedReplicaIsSkippedUntilItMayBeRetried() throws Exception {
+		given(this.first.getConnection()).willThrow(new SQLException("down"));
+		given(this.second.getConnection()).willReturn(this.secondConnection);
+		var router = router(Duration.ofHours(1));
+
+		assertThat(router.getConnection()).isSameAs(this.secondConnection);
+		assertThat(router.getConnection()).isSameAs(this.secondConnection);
+		assertThat(router.getConnection()).isSameAs(this.secondConnection);
+		verify(this.first, times(1)).getConnection();
+	}
+
+	@Test
+	void fallsBackToThePrimaryWhenNoReplicaIsUp() throws Exception {
+		given(this.first.getConnection()).willThrow(new SQLException("down"));
+		given(this.second.getConnection()).willThrow(new SQLException("down"));
+		given(this.primary.getConnection()).willReturn(this.primaryConnection);
+		var router = router(Duration.ofHours(1));
+
+		assertThat(router.getConnection()).isSameAs(this.primaryConnection);
+		assertThat(router.getConnection()).isSameAs(this.primaryConnection);
+		verify(this.first, times(1)).getConnection();
+		verify(this.second, times(1)).getConnection();
+	}
+
+	@Test
+	void unreachableReplicaPoolStartsAndFallsBackToThePrimaryQuickly() throws Exception {
+		given(this.primary.getConnection()).willReturn(this.primaryConnection);
+		var environment = new MockEnvironment().withProperty("customer.datasource.pool.replica-connection-timeout",
+				"250ms");
+		// nothing listens on port 1
+		var replica = DataSources.replica(environment, "unreachable", "jdbc:postgresql://127.0.0.1:1/customers",
+				"user", null, null);
+		try (var router = new ReplicaRoutingDataSource(this.primary, List.of(replica),
+				ReplicaRoutingDataSource.Selection.ROUND_ROBIN, Duration.ofHours(1))) {
+			var start = System.nanoTime();
+
+			assertThat(router.getConnection()).isSameAs(this.primaryConnection);
+			assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+			assertThat(router.getConnection()).isSameAs(this.primaryConnection);
+		}
+	}
+
+	private ReplicaRoutingDataSource router(Duration retryAfter) {
+		return new ReplicaRoutingDataSource(this.primary, List.of(this.first, this.second),
+				ReplicaRoutingDataSource.Selection.ROUND_ROBIN, retryAfter);
+	}
+
+}
@@ -0,0 +1,111 @@
+package com.example.framework;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RingBufferEventBusTests {
+
+	@Test
+	void deliversEveryEventInOrderPerPublisherAcrossLapsOfTheRing() throws InterruptedException {
+		var bus = new RingBufferEventBus<int[]>(int[].class, 16, null);
+		var received = new ArrayList<int[]>();
+		var batches = new AtomicInteger();
+		bus.subscribe("test", (event, endOfBatch) -> {
+			received.add(event);
+			if (endOfBatch) {
+				batches.incrementAndGet();
+			}
+		});
+		bus.start();
+		var publishers = new ArrayList<Thread>();
+		for (var p = 0; p < 4; p++) {
+			var publisher = p;
+			publishers.add(Thread.ofPlatform().start(() -> {
+				for (var i = 0; i < 10_000; i++) {
+					bus.publish(new int[] { publisher, i });
+				}
+			}));
+		}
+		for (var publisher : publishers) {
+			publisher.join();
+		}
+		bus.stop();
+
+		assertThat(received).hasSize(40_000);
+		var last = new int[] { -1, -1, -1, -1 };
+		for (var event : received) {
+			assertThat(event[1]).isEqualTo(last[event[0]] + 1);
+			last[event[0]] = event[1];
+		}
+		assertThat(batches.get()).isPositive().isLessThanOrEqualTo(40_000);
+		assertThat(bus.publish(new int[] { 0, 0 })).isFalse();
+	}
+
+	@Test
+	void clearsTheSlotsEverySubscriberHasPassed() throws InterruptedException {
+		var bus = new RingBufferEventBus<int[]>(int[].class, 16, null);
+		var first = new CountDownLatch(40);
+		var second = new CountDownLatch(40);
+		bus.subscribe("first", (_, _) -> first.countDown());
+		bus.subscribe("second", (_, _) -> second.countDown());
+		bus.start();
+		for (var i = 0; i < 40; i++) {
+			assertThat(bus.publish(new int[] { i })).isTrue();
+		}
+		first.await();
+		second.await();
+		bus.stop();
+
+		assertThat((Object[]) ReflectionTestUtils.getField(bus, "entries")).containsOnlyNulls();
+	}
+
+	@Test
+	void subscribesEventListenerMethodsThatTakeTheEventType() {
+		var listener = new Listener();
+		RingBufferEventBus<UserAuthenticatedEvent> bus;
+		try (var context = new AnnotationConfigApplicationContext()) {
+			context.registerBean("listener", Listener.class, () -> listener);
+			context.registerBean("bus", RingBufferEventBus.class,
+					() -> new RingBufferEventBus<>(UserAuthenticatedEvent.class, 1024, null));
+			context.refresh();
+			bus = context.getBean(RingBufferEventBus.class);
+			bus.publish(new UserAuthenticatedEvent(Instant.EPOCH, "jlong"));
+			bus.publish(new UserAuthenticatedEvent(Instant.EPOCH, "jhoeller"));
+		}
+
+		assertThat(listener.usernames).containsExactly("jlong", "jhoeller");
+		assertThat(listener.threads).allMatch(name -> name.equals("event-bus-listener.onAuthentication"));
+		assertThat(bus.isRunning()).isFalse();
+	}
+
+	static class Listener {
+
+		final List<String> usernames = new CopyOnWriteArrayList<>();
+
+		final List<String> threads = new CopyOnWriteArrayList<>();
+
+		@EventListener
+		void onAuthentication(UserAuthenticatedEvent event) {
+			this.usernames.add(event.username());
+			this.threads.add(Thread.currentThread().getName());
+		}
+
+		@EventListener
+		void onSomethingElse(String event) {
+			throw new IllegalStateException("not an authentication: " + event);
+		}
+
+	}
+
+}
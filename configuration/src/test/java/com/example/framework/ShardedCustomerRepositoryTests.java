@@ -0,0 +1,121 @@
+package com.example.framework;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatIllegalStateException;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class ShardedCustomerRepositoryTests {
+
+	private final CustomerRepository even = mock(CustomerRepository.class);
+
+	private final CustomerRepository odd = mock(CustomerRepository.class);
+
+	private final ShardedCustomerRepository repository = new ShardedCustomerRepository(List.of(this.even, this.odd),
+			List.of(), 100);
+
+	@AfterEach
+	void close() throws Exception {
+		this.repository.close();
+	}
+
+	@Test
+	void findByIdQueriesEachShardForItsOwnIds() {
+		given(this.even.findById(List.of(2, 4))).willReturn(List.of(customer(2), customer(4)));
+		given(this.odd.findById(List.of(1))).willReturn(List.of(customer(1)));
+
+		var customers = this.repository.findById(List.of(2, 1, 4));
+
+		assertThat(customers).containsExactlyInAnyOrder(customer(1), customer(2), customer(4));
+	}
+
+	@Test
+	void saveAllReturnsCustomersInTheOrderTheyWereGiven() {
+		given(this.even.saveAll(any())).willAnswer(invocation -> saved(invocation.getArgument(0), 10));
+		given(this.odd.saveAll(any())).willAnswer(invocation -> saved(invocation.getArgument(0), 11));
+
+		var saved = this.repository.saveAll(List.of(new Customer(null, "a"), new Customer(null, "b"),
+				new Customer(null, "c")));
+
+		assertThat(saved).extracting(Customer::name).containsExactly("a", "b", "c");
+		assertThat(saved).extracting(Customer::id).containsExactly(10, 11, 12);
+	}
+
+	@Test
+	void findPageMergesTheShardPages() {
+		given(this.even.findPage(null, 2)).willReturn(new CustomerPage(List.of(customer(2), customer(4)), 4));
+		given(this.odd.findPage(null, 2)).willReturn(new CustomerPage(List.of(customer(1)), null));
+
+		var page = this.repository.findPage(null, 2);
+
+		assertThat(page.customers()).containsExactly(customer(1), customer(2));
+		assertThat(page.nextAfterId()).isEqualTo(2);
+		verify(this.odd).findPage(null, 2);
+	}
+
+	@Test
+	void bulkLoadWritesEveryShardsLastBatch() {
+		var repository = new ShardedCustomerRepository(List.of(this.even, this.odd), List.of(), 2);
+		given(this.even.saveAll(any())).willAnswer(invocation -> saved(invocation.getArgument(0), 10));
+		given(this.odd.saveAll(any())).willAnswer(invocation -> saved(invocation.getArgument(0), 11));
+
+		var result = repository.bulkLoad(Stream.of("a", "b", "c", "d", "e").map(name -> new Customer(null, name)));
+
+		assertThat(result.rows()).isEqualTo(5);
+	}
+
+	@Test
+	void bulkLoadCancelsTheOtherShardsWhenOneFails() throws InterruptedException {
+		var repository = new ShardedCustomerRepository(List.of(this.even, this.odd), List.of(), 1);
+		var started = new CountDownLatch(1);
+		var interrupted = new CountDownLatch(1);
+		// fails once the other shard's batch is running, so there's a write to cancel
+		given(this.even.saveAll(any())).willAnswer(_ -> {
+			started.await();
+			throw new IllegalStateException("shard down");
+		});
+		given(this.odd.saveAll(any())).willAnswer(_ -> {
+			started.countDown();
+			try {
+				new CountDownLatch(1).await();
+			}
+			catch (InterruptedException ex) {
+				interrupted.countDown();
+			}
+			return List.of();
+		});
+
+		assertThatIllegalStateException()
+			.isThrownBy(() -> repository.bulkLoad(Stream.of("a", "b", "c").map(name -> new Customer(null, name))))
+			.withMessage("shard down");
+		assertThat(interrupted.await(10, TimeUnit.SECONDS)).isTrue();
+	}
+
+	// gives each customer an id that routes back to the shard that saved it
+	private static Collection<Customer> saved(Collection<Customer> customers, int firstId) {
+		var saved = new ArrayList<Customer>();
+		var id = firstId;
+		for (var customer : customers) {
+			saved.add(new Customer(id, customer.name()));
+			id += 2;
+		}
+		return saved;
+	}
+
+	private static Customer customer(int id) {
+		return new Customer(id, "customer " + id);
+	}
+
+}
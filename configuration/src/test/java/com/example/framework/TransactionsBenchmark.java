@@ -0,0 +1,126 @@
+package com.example.framework;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call overhead of {@link Transactions#transactional} against the reflective proxy
+ * it replaced, and against calling the target directly. The transaction manager does
+ * nothing, so what's left is the cost of the proxy and of the transaction bookkeeping.
+ * The old proxy printed every call; that's left out here, or the benchmark would only
+ * measure stdout.
+ * <p>
+ * Run {@link #main} from the IDE, or after {@code mvn test-compile} with the test
+ * classpath. Add {@code -prof gc} to the JMH options to see the allocation per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransactionsBenchmark {
+
+	private final TransactionTemplate transactionTemplate = new TransactionTemplate(new NoOpTransactionManager());
+
+	private final Counter direct = new SimpleCounter();
+
+	private final Counter reflective = reflective(this.transactionTemplate, new SimpleCounter());
+
+	private final Counter transactional = Transactions.transactional(this.transactionTemplate, new SimpleCounter());
+
+	private int value;
+
+	@Benchmark
+	public int direct() {
+		return this.direct.add(this.value);
+	}
+
+	@Benchmark
+	public int reflectiveProxy() {
+		return this.reflective.add(this.value);
+	}
+
+	@Benchmark
+	public int transactionalProxy() {
+		return this.transactional.add(this.value);
+	}
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(TransactionsBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	// the proxy Transactions.transactional used to make, without the println
+	@SuppressWarnings("unchecked")
+	private static <T> T reflective(TransactionTemplate transactionTemplate, T target) {
+		return (T) Proxy.newProxyInstance(target.getClass().getClassLoader(), target.getClass().getInterfaces(),
+				(_, method, args) -> transactionTemplate.execute(_ -> {
+					try {
+						return method.invoke(target, args);
+					}
+					catch (Exception e) {
+						throw new RuntimeException(e);
+					}
+				}));
+	}
+
+	interface Counter {
+
+		int add(int delta);
+
+	}
+
+	static class SimpleCounter implements Counter {
+
+		private int total;
+
+		@Override
+		public int add(int delta) {
+			return this.total += delta;
+		}
+
+	}
+
+	static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+
+		NoOpTransactionManager() {
+			setTransactionSynchronization(SYNCHRONIZATION_NEVER);
+		}
+
+		@Override
+		protected Object doGetTransaction() {
+			return this;
+		}
+
+		@Override
+		protected void doBegin(Object transaction, TransactionDefinition definition) {
+		}
+
+		@Override
+		protected void doCommit(DefaultTransactionStatus status) {
+		}
+
+		@Override
+		protected void doRollback(DefaultTransactionStatus status) {
+		}
+
+	}
+
+}
@@ -0,0 +1,170 @@
+package com.example.framework;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatExceptionOfType;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class TransactionsTests {
+
+	private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+	private final TransactionStatus status = mock(TransactionStatus.class);
+
+	private final TransactionTemplate transactionTemplate = new TransactionTemplate(this.transactionManager);
+
+	@Test
+	void commitsAfterTheCallReturns() throws IOException {
+		given(this.transactionManager.getTransaction(this.transactionTemplate)).willReturn(this.status);
+		Greeter greeter = Transactions.transactional(this.transactionTemplate, (Greeter) name -> "hello " + name);
+
+		assertThat(greeter.greet("a")).isEqualTo("hello a");
+		verify(this.transactionManager).commit(this.status);
+		verify(this.transactionManager, never()).rollback(any());
+	}
+
+	@Test
+	void rollsBackAndRethrowsTheOriginalException() {
+		given(this.transactionManager.getTransaction(this.transactionTemplate)).willReturn(this.status);
+		var failure = new IOException("disk full");
+		Greeter greeter = Transactions.transactional(this.transactionTemplate, (Greeter) _ -> {
+			throw failure;
+		});
+
+		assertThatExceptionOfType(IOException.class).isThrownBy(() -> greeter.greet("a")).isSameAs(failure);
+		verify(this.transactionManager).rollback(this.status);
+		verify(this.transactionManager, never()).commit(any());
+	}
+
+	@Test
+	void objectMethodsRunWithoutATransaction() {
+		Greeter greeter = Transactions.transactional(this.transactionTemplate, (Greeter) name -> name);
+
+		assertThat(greeter).isEqualTo(greeter);
+		assertThat(greeter.hashCode()).isEqualTo(System.identityHashCode(greeter));
+		assertThat(greeter.toString()).startsWith("transactional ");
+		verifyNoInteractions(this.transactionManager);
+	}
+
+	@Test
+	void readsRunReadOnly() {
+		given(this.transactionManager.getTransaction(any())).willReturn(this.status);
+		Catalog catalog = Transactions.transactional(this.transactionTemplate, new SimpleCatalog());
+
+		catalog.findName(1);
+
+		verify(this.transactionManager).getTransaction(argThat(TransactionDefinition::isReadOnly));
+		verify(this.transactionManager).commit(this.status);
+	}
+
+	@Test
+	void annotationOverridesTheNamingConvention() {
+		given(this.transactionManager.getTransaction(any())).willReturn(this.status);
+		Catalog catalog = Transactions.transactional(this.transactionTemplate, new SimpleCatalog());
+
+		catalog.findNameForUpdate(1);
+
+		verify(this.transactionManager).getTransaction(argThat(definition -> !definition.isReadOnly()));
+	}
+
+	@Test
+	void supportsPropagationSkipsDemarcation() {
+		Catalog catalog = Transactions.transactional(this.transactionTemplate, new SimpleCatalog());
+
+		assertThat(catalog.count()).isEqualTo(1);
+		verifyNoInteractions(this.transactionManager);
+	}
+
+	@Test
+	void annotatedMethodsFollowTheirRollbackRules() {
+		given(this.transactionManager.getTransaction(any())).willReturn(this.status);
+		Catalog catalog = Transactions.transactional(this.transactionTemplate, new SimpleCatalog());
+
+		assertThatExceptionOfType(IOException.class).isThrownBy(catalog::rename);
+		verify(this.transactionManager).commit(this.status);
+		verify(this.transactionManager, never()).rollback(any());
+	}
+
+	@Test
+	void recordsMetricsWhenGivenARegistry() {
+		given(this.transactionManager.getTransaction(any())).willReturn(this.status);
+		var meterRegistry = new SimpleMeterRegistry();
+		Catalog catalog = Transactions.transactional(this.transactionTemplate, new SimpleCatalog(), meterRegistry);
+
+		catalog.findName(1);
+		assertThatExceptionOfType(IOException.class).isThrownBy(catalog::rename);
+
+		assertThat(meterRegistry.get("repository.invocation").tag("method", "findName").timer().count()).isOne();
+		assertThat(meterRegistry.get("repository.call").tag("method", "findName").timer().count()).isOne();
+		assertThat(meterRegistry.get("repository.transactions")
+			.tags("method", "findName", "outcome", "commit")
+			.counter()
+			.count()).isOne();
+		assertThat(meterRegistry.get("repository.transactions")
+			.tags("method", "rename", "outcome", "commit")
+			.counter()
+			.count()).isOne();
+	}
+
+	interface Greeter {
+
+		String greet(String name) throws IOException;
+
+	}
+
+	interface Catalog {
+
+		String findName(int id);
+
+		String findNameForUpdate(int id);
+
+		int count();
+
+		void rename() throws IOException;
+
+	}
+
+	static class SimpleCatalog implements Catalog {
+
+		@Override
+		public String findName(int id) {
+			return "a";
+		}
+
+		@Override
+		@Transactional
+		public String findNameForUpdate(int id) {
+			return "a";
+		}
+
+		@Override
+		@Transactional(propagation = Propagation.SUPPORTS)
+		public int count() {
+			return 1;
+		}
+
+		@Override
+		@Transactional
+		public void rename() throws IOException {
+			throw new IOException("read-only file system");
+		}
+
+	}
+
+}
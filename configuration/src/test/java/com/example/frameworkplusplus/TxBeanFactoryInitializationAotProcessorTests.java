@@ -0,0 +1,59 @@
+package com.example.frameworkplusplus;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.generate.ClassNameGenerator;
+import org.springframework.aot.generate.DefaultGenerationContext;
+import org.springframework.aot.generate.InMemoryGeneratedFiles;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.beans.factory.aot.BeanFactoryInitializationCode;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.javapoet.ClassName;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class TxBeanFactoryInitializationAotProcessorTests {
+
+    private final TxBeanFactoryInitializationAotProcessor processor = new TxBeanFactoryInitializationAotProcessor();
+
+    @Test
+    void registersTheProxyAndReflectionForTxBeans() {
+        var beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("greeter", new RootBeanDefinition(SimpleGreeter.class));
+        var generationContext = new DefaultGenerationContext(
+                new ClassNameGenerator(ClassName.get("com.example", "Test")), new InMemoryGeneratedFiles());
+
+        var contribution = this.processor.processAheadOfTime(beanFactory);
+        assertThat(contribution).isNotNull();
+        contribution.applyTo(generationContext, mock(BeanFactoryInitializationCode.class));
+
+        var hints = generationContext.getRuntimeHints();
+        assertThat(RuntimeHintsPredicates.proxies().forInterfaces(Tx.class, Greeter.class)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(Greeter.class)
+                .withMemberCategory(MemberCategory.INVOKE_PUBLIC_METHODS)).accepts(hints);
+        assertThat(RuntimeHintsPredicates.reflection().onType(SimpleGreeter.class)).accepts(hints);
+    }
+
+    @Test
+    void contributesNothingWithoutTxBeans() {
+        var beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerBeanDefinition("thing", new RootBeanDefinition(MyThing.class));
+
+        assertThat(this.processor.processAheadOfTime(beanFactory)).isNull();
+    }
+
+    interface Greeter {
+
+        String greet(String name);
+    }
+
+    static class SimpleGreeter implements Tx, Greeter {
+
+        @Override
+        public String greet(String name) {
+            return "hello " + name;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+#!/usr/bin/env bash
+# time to the first query, and resident memory then, for a cold JVM, a JVM with the AOT
+# cache and the native image, each launched $RUNS times against the database in compose.yml
+#   ./mvnw -DskipTests -Paot-cache package    (the extracted jar and its AOT cache)
+#   ./mvnw -DskipTests -Pnative native:compile    (target/configuration)
+set -euo pipefail
+runs=${RUNS:-5}
+jar=$(ls target/application/configuration-*.jar)
+
+measure() {
+  local name=$1
+  shift
+  for _ in $(seq "$runs"); do
+    "$@" | grep '^first query'
+  done | awk -v name="$name" '{ ms += $3; mb += $7 } END { printf "%-10s %6.0f ms to the first query %6.0f MB resident\n", name, ms / NR, mb / NR }'
+}
+
+stop=-Dcustomer.startup.exit=true
+measure "cold jvm" java $stop -jar "$jar"
+measure "aot cache" java -XX:AOTCache=target/application/configuration.aot $stop -jar "$jar"
+measure "native" target/configuration $stop